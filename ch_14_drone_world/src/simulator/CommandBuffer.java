@@ -0,0 +1,115 @@
+package simulator;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import simulator.interfaces.DroneView;
+
+/**
+ * A fleet plan: routes and manifests for any number of drones, checked and applied together.
+ * Get one from Simulator.commands(), chain route and manifest calls, then submit().  Drones are named by id
+ * and places by their index from Simulator.getPlaceIndex.  Nothing is applied if any command is bad.
+ * Submitted plans take effect at the end of the round, after every drone has moved, in the order they were
+ * submitted.  A plan submitted between rounds takes effect at the end of the next one.
+ */
+public final class CommandBuffer {
+	
+	private final Simulator simulator;
+	
+	private int size;
+	private String[] droneIds = new String[8];
+	//A place index for a route, -1 for a manifest
+	private int[] places = new int[8];
+	private BitSet[] manifests = new BitSet[8];
+	//Filled in by submit
+	private int[] slots;
+	private boolean submitted;
+	
+	CommandBuffer(Simulator simulator){
+		this.simulator = simulator;
+	}
+	
+	/**
+	 * Send a drone to the place with this index
+	 */
+	public CommandBuffer route(String droneId,int place){
+		if(place < 0){
+			throw new IllegalArgumentException("No place with index:"+place);
+		}
+		add(droneId,place,null);
+		return this;
+	}
+	
+	public CommandBuffer route(DroneView drone,int place){
+		return route(drone.getId(),place);
+	}
+	
+	/**
+	 * Set a drone's manifest to the places whose indexes are set
+	 */
+	public CommandBuffer manifest(String droneId,BitSet places){
+		add(droneId,-1,(places == null) ? new BitSet() : (BitSet) places.clone());
+		return this;
+	}
+	
+	public CommandBuffer manifest(DroneView drone,BitSet places){
+		return manifest(drone.getId(),places);
+	}
+	
+	public int size(){
+		return size;
+	}
+	
+	/**
+	 * Check every command and hand the plan to the simulator.  A buffer can only be submitted once.
+	 * @throws IllegalArgumentException naming the first bad command, in which case none are applied
+	 */
+	public void submit(){
+		if(submitted){
+			throw new IllegalStateException("This plan has already been submitted");
+		}
+		slots = simulator.validate(this);
+		submitted = true;
+		simulator.submit(this);
+	}
+	
+	private void add(String droneId,int place,BitSet manifest){
+		if(submitted){
+			throw new IllegalStateException("This plan has already been submitted");
+		}
+		if(droneId == null){
+			throw new IllegalArgumentException("Can't command a drone with a null id");
+		}
+		if(size == droneIds.length){
+			int capacity = size*2;
+			droneIds = Arrays.copyOf(droneIds,capacity);
+			places = Arrays.copyOf(places,capacity);
+			manifests = Arrays.copyOf(manifests,capacity);
+		}
+		droneIds[size] = droneId;
+		places[size] = place;
+		manifests[size] = manifest;
+		size++;
+	}
+	
+	String getDroneId(int index){
+		return droneIds[index];
+	}
+	
+	boolean isRoute(int index){
+		return places[index] >= 0;
+	}
+	
+	int getPlace(int index){
+		return places[index];
+	}
+	
+	BitSet getManifest(int index){
+		return manifests[index];
+	}
+	
+	int getSlot(int index){
+		return slots[index];
+	}
+
+}
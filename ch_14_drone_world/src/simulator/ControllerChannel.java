@@ -0,0 +1,122 @@
+package simulator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The two rings a simulator and a controller host talk over, one each way, in one mapped file.
+ * Each side builds a frame in its own buffer with begin, fills it in and sends it.
+ *
+ * Frames start with their type.  From the simulator:
+ *   NEXT_NAME, asking for a drone name
+ *   WORLD, the places, the people and the hosted drones, once before the first round
+ *   EVENTS, a round: the state of the people, places and hosted drones, then the call backs
+ *   SHUTDOWN
+ * From the host:
+ *   HELLO, the company name, the call backs it subscribes to and its progress policy, when it starts
+ *   NAME, a drone name
+ *   COMMANDS, the routes and manifests decided in a round, by drone and place index
+ *   FAILED, the controller threw during a round
+ */
+final class ControllerChannel {
+
+	static final int DEFAULT_CAPACITY = 1 << 20;
+
+	static final byte NEXT_NAME = 1;
+	static final byte WORLD = 2;
+	static final byte EVENTS = 3;
+	static final byte SHUTDOWN = 4;
+	static final byte HELLO = 5;
+	static final byte NAME = 6;
+	static final byte COMMANDS = 7;
+	static final byte FAILED = 8;
+
+	static final byte ROUTE = 0;
+	static final byte MANIFEST = 1;
+
+	private final RandomAccessFile file;
+	private final MappedRing out;
+	private final MappedRing in;
+	private final ByteBuffer sending;
+	private final ByteBuffer receiving;
+
+	/**
+	 * Map the file, making it big enough if it is new.  Both sides have to agree on the capacity.
+	 * @param simulatorSide true for the simulator's end, which writes the first ring and reads the second
+	 */
+	ControllerChannel(File path,boolean simulatorSide,int capacity) throws IOException {
+		int ring = MappedRing.size(capacity);
+		file = new RandomAccessFile(path,"rw");
+		if(file.length() < 2L*ring){
+			file.setLength(2L*ring);
+		}
+		MappedByteBuffer mapped = file.getChannel().map(FileChannel.MapMode.READ_WRITE,0,2L*ring);
+		MappedRing toHost = new MappedRing(region(mapped,0,ring));
+		MappedRing toSimulator = new MappedRing(region(mapped,ring,ring));
+		out = simulatorSide ? toHost : toSimulator;
+		in = simulatorSide ? toSimulator : toHost;
+		sending = ByteBuffer.allocate(capacity - 4).order(ByteOrder.nativeOrder());
+		receiving = ByteBuffer.allocate(capacity - 4).order(ByteOrder.nativeOrder());
+	}
+
+	private static ByteBuffer region(MappedByteBuffer mapped,int offset,int size){
+		ByteBuffer all = mapped.duplicate();
+		all.position(offset).limit(offset + size);
+		return all.slice();
+	}
+
+	/**
+	 * @return the buffer to write the frame into, with its type already in it
+	 */
+	ByteBuffer begin(byte type){
+		sending.clear();
+		sending.put(type);
+		return sending;
+	}
+
+	/**
+	 * Send the frame started with begin
+	 * @return false if the other side didn't make room in time
+	 */
+	boolean send(long timeoutNanos){
+		sending.flip();
+		return out.write(sending,timeoutNanos);
+	}
+
+	/**
+	 * @return the next frame, positioned at its type, or null if none came in time
+	 */
+	ByteBuffer receive(long timeoutNanos){
+		if(in.read(receiving,timeoutNanos) < 0){
+			return null;
+		}
+		return receiving;
+	}
+
+	void close(){
+		try {
+			file.close();
+		} catch (IOException e) {
+			//Nothing more to do with it
+		}
+	}
+
+	static void putString(ByteBuffer buffer,String s){
+		byte[] bytes = (s == null) ? new byte[0] : s.getBytes(StandardCharsets.UTF_8);
+		buffer.putInt(bytes.length);
+		buffer.put(bytes);
+	}
+
+	static String getString(ByteBuffer buffer){
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return new String(bytes,StandardCharsets.UTF_8);
+	}
+
+}
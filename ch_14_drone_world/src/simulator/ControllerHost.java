@@ -0,0 +1,291 @@
+package simulator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import simulator.enums.DroneEvent;
+import simulator.enums.DroneState;
+import simulator.enums.PersonState;
+import simulator.interfaces.DroneController;
+import simulator.interfaces.SimulationController;
+
+/**
+ * Runs a DroneController for a RemoteDroneController in another JVM, usually one it started.
+ * The controller is given a Simulator of its own: a copy of the places, the people and its drones that is
+ * brought up to date from the real one at the start of every round.  Its routes, manifests and plans are sent
+ * back rather than changing the copy.  Other companies' drones aren't in the copy.
+ */
+public class ControllerHost {
+
+	private static final DroneEvent[] EVENTS = DroneEvent.values();
+	private static final DroneState[] DRONE_STATES = DroneState.values();
+	private static final PersonState[] PERSON_STATES = PersonState.values();
+
+	private final ControllerChannel channel;
+	private final DroneController controller;
+
+	//The copy of the world, in the order the simulator sends it
+	private Simulator world;
+	private Place[] places;
+	private Map<String,Integer> placeIndex = new HashMap<String,Integer>();
+	private Person[] people;
+	private Drone[] drones;
+	private Map<String,Integer> droneIndex = new HashMap<String,Integer>();
+
+	private final DroneEventBatch batch = new DroneEventBatch();
+	private DroneDecisions decisions;
+
+	public ControllerHost(File channel,DroneController controller) throws IOException {
+		if(controller == null){
+			throw new IllegalArgumentException("Can't host a null controller");
+		}
+		this.channel = new ControllerChannel(channel,false,ControllerChannel.DEFAULT_CAPACITY);
+		this.controller = controller;
+	}
+
+	/**
+	 * Answer the simulator until it says to stop
+	 */
+	public void run(){
+		ByteBuffer hello = channel.begin(ControllerChannel.HELLO);
+		ControllerChannel.putString(hello,controller.getCompanyName());
+		int mask = 0;
+		Set<DroneEvent> events = controller.getSubscribedEvents();
+		for(DroneEvent event: (events == null) ? Arrays.asList(EVENTS) : events){
+			mask |= 1 << event.ordinal();
+		}
+		hello.putInt(mask);
+		ProgressPolicy policy = controller.getTransitProgressPolicy();
+		((policy == null) ? ProgressPolicy.everyTick() : policy).writeTo(hello);
+		channel.send(-1);
+
+		while(true){
+			ByteBuffer frame = channel.receive(-1);
+			switch (frame.get()){
+				case ControllerChannel.NEXT_NAME:
+					ControllerChannel.putString(channel.begin(ControllerChannel.NAME),controller.getNextDroneName());
+					channel.send(-1);
+					break;
+				case ControllerChannel.WORLD:
+					readWorld(frame);
+					break;
+				case ControllerChannel.EVENTS:
+					playRound(frame);
+					channel.send(-1);
+					break;
+				case ControllerChannel.SHUTDOWN:
+					channel.close();
+					return;
+				default:
+					throw new IllegalStateException("Unknown frame from the simulator");
+			}
+		}
+	}
+
+	private void readWorld(ByteBuffer frame){
+		places = new Place[frame.getInt()];
+		for(int i = 0; i < places.length; i++){
+			places[i] = new Place(ControllerChannel.getString(frame),readPosition(frame));
+			placeIndex.put(places[i].getName(),i);
+		}
+		people = new Person[frame.getInt()];
+		for(int i = 0; i < people.length; i++){
+			String id = ControllerChannel.getString(frame);
+			String name = ControllerChannel.getString(frame);
+			String start = ControllerChannel.getString(frame);
+			String destination = ControllerChannel.getString(frame);
+			people[i] = new Person(id,name,start,readPosition(frame),destination,personState(frame.get()));
+		}
+		drones = new Drone[frame.getInt()];
+		for(int i = 0; i < drones.length; i++){
+			String id = ControllerChannel.getString(frame);
+			String name = ControllerChannel.getString(frame);
+			int capacity = frame.getInt();
+			double rechargeRate = frame.getDouble();
+			double dischargeRate = frame.getDouble();
+			Place start = place(frame.getInt());
+			Place destination = place(frame.getInt());
+			Drone d = new Drone(controller,id,name,(start == null) ? places[0] : start,destination,capacity);
+			d.setRechargeRate(rechargeRate);
+			d.setDischargeRate(dischargeRate);
+			//The drone gets a position of its own rather than sharing its start's
+			d.setPosition(new Position(d.getPosition()));
+			drones[i] = d;
+			droneIndex.put(id,i);
+		}
+		world = new Simulator(new HostSimulationController(),Arrays.asList(people),Arrays.asList(places),Arrays.asList(drones));
+		decisions = new DroneDecisions(world.getPlaceNames());
+	}
+
+	/**
+	 * Bring the copy up to date, hand the controller the round and start the answer
+	 */
+	private void playRound(ByteBuffer frame){
+		long tick = frame.getLong();
+		for(Person p: people){
+			p.setState(personState(frame.get()));
+		}
+		for(Place place: places){
+			readPeople(frame,place.getWaitingToEmbark());
+		}
+		for(Drone d: drones){
+			byte state = frame.get();
+			d.setState((state < 0) ? null : DRONE_STATES[state]);
+			d.setStart(place(frame.getInt()));
+			d.setDestination(place(frame.getInt()));
+			d.setLocation(frame.getDouble(),frame.getDouble(),frame.getDouble());
+			d.setCharge(frame.getDouble());
+			d.setEmbarkingStart(frame.getLong());
+			d.setDisembarkingStart(frame.getLong());
+			d.setTransitStart(frame.getLong());
+			d.setTransitEnd(frame.getLong());
+			readPeople(frame,d.getPassengers());
+			readPeople(frame,d.getEmbarkers());
+			readPeople(frame,d.getDisembarkers());
+			d.getManifest().clear();
+			for(int count = frame.getInt(); count > 0; count--){
+				d.getManifest().add(places[frame.getInt()].getName());
+			}
+		}
+		batch.clear();
+		for(int count = frame.getInt(); count > 0; count--){
+			DroneEvent event = EVENTS[frame.get()];
+			Drone d = drones[frame.getInt()];
+			batch.add(tick,event,d.view(),frame.getDouble());
+		}
+
+		decisions.clear();
+		try {
+			world.hostTurn(tick,batch,decisions);
+		} catch (RuntimeException e) {
+			ControllerChannel.putString(channel.begin(ControllerChannel.FAILED),e.toString());
+			return;
+		}
+		writeCommands(channel.begin(ControllerChannel.COMMANDS));
+	}
+
+	private void writeCommands(ByteBuffer frame){
+		int countAt = frame.position();
+		frame.putInt(0);
+		int count = 0;
+		for(int i = 0; i < decisions.size(); i++){
+			Object decision = decisions.getDecision(i);
+			if(decision instanceof CommandBuffer){
+				CommandBuffer plan = (CommandBuffer) decision;
+				for(int j = 0; j < plan.size(); j++){
+					int drone = droneIndex.get(plan.getDroneId(j));
+					if(plan.isRoute(j)){
+						putRoute(frame,drone,placeIndex.get(world.getPlaceName(plan.getPlace(j))));
+					}
+					else{
+						BitSet manifest = plan.getManifest(j);
+						frame.put(ControllerChannel.MANIFEST);
+						frame.putInt(drone);
+						frame.putInt(manifest.cardinality());
+						for(int place = manifest.nextSetBit(0); place >= 0; place = manifest.nextSetBit(place + 1)){
+							frame.putInt(placeIndex.get(world.getPlaceName(place)));
+						}
+					}
+					count++;
+				}
+				continue;
+			}
+			int drone = droneIndex.get(decisions.getDrone(i).getId());
+			if(decision instanceof Integer){
+				putRoute(frame,drone,placeIndex.get(world.getPlaceName((Integer) decision)));
+			}
+			else{
+				Manifest manifest = (Manifest) decision;
+				frame.put(ControllerChannel.MANIFEST);
+				frame.putInt(drone);
+				frame.putInt(manifest.size());
+				for(int place = manifest.nextPlace(0); place >= 0; place = manifest.nextPlace(place + 1)){
+					frame.putInt(placeIndex.get(world.getPlaceName(place)));
+				}
+			}
+			count++;
+		}
+		frame.putInt(countAt,count);
+	}
+
+	private static void putRoute(ByteBuffer frame,int drone,int place){
+		frame.put(ControllerChannel.ROUTE);
+		frame.putInt(drone);
+		frame.putInt(place);
+	}
+
+	private void readPeople(ByteBuffer frame,Collection<Person> group){
+		group.clear();
+		for(int count = frame.getInt(); count > 0; count--){
+			group.add(people[frame.getInt()]);
+		}
+	}
+
+	private Place place(int index){
+		return (index < 0) ? null : places[index];
+	}
+
+	private static Position readPosition(ByteBuffer frame){
+		return new Position(frame.getDouble(),frame.getDouble(),frame.getDouble());
+	}
+
+	private static PersonState personState(byte state){
+		return (state < 0) ? null : PERSON_STATES[state];
+	}
+
+	//The copy of the world is never run, so it doesn't matter what this says
+	private static class HostSimulationController implements SimulationController {
+
+		private final Random random = new Random(0);
+
+		@Override
+		public Random getRandom() {
+			return random;
+		}
+
+		@Override
+		public boolean isHighResolution() {
+			return false;
+		}
+
+		@Override
+		public long simulatorSpeed() {
+			return 1;
+		}
+	}
+
+	/**
+	 * Usage: ControllerHost channel-file controller-class
+	 */
+	public static void main(String[] args) throws Exception {
+		if(args.length != 2){
+			System.err.println("Usage: ControllerHost <channel file> <controller class>");
+			System.exit(1);
+		}
+		DroneController controller = (DroneController) Class.forName(args[1]).getDeclaredConstructor().newInstance();
+
+		//The simulator holds the other end of standard input, once it closes there is no one to answer
+		Thread watcher = new Thread(() -> {
+			try {
+				while(System.in.read() >= 0);
+			} catch (IOException e) {
+				//Gone either way
+			}
+			System.exit(0);
+		},"Simulator watcher");
+		watcher.setDaemon(true);
+		watcher.start();
+
+		new ControllerHost(new File(args[0]),controller).run();
+		System.exit(0);
+	}
+
+}
@@ -0,0 +1,157 @@
+package simulator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.LongSupplier;
+
+import reference.MySimulationController;
+import simulator.enums.DroneEvent;
+import simulator.enums.DroneState;
+import simulator.enums.PersonState;
+import simulator.interfaces.BatchDroneController;
+import simulator.interfaces.DroneController;
+import simulator.interfaces.DroneView;
+
+/**
+ * Measures what running a controller in a ControllerHost costs: the same world is run once with the controller
+ * in this JVM and once with it in a host, and the time each round took is compared.
+ * Usage: ControllerHostBenchmark [drones] [rounds]
+ */
+public class ControllerHostBenchmark {
+
+	private static final int WARM_UP = 500;
+	private static final int PLACES = 10;
+
+	/**
+	 * Sends every idle drone on to the next place with a manifest for it, so rounds have call backs and commands
+	 */
+	public static class ShuttleController implements BatchDroneController {
+
+		private Simulator simulator;
+		private int drones;
+		//How many batches it has been handed
+		long batches;
+
+		@Override
+		public void setSimulator(Simulator simulator) {
+			this.simulator = simulator;
+		}
+
+		@Override
+		public String getNextDroneName() {
+			return "Shuttle "+(drones++);
+		}
+
+		@Override
+		public String getCompanyName() {
+			return "Shuttle Inc.";
+		}
+
+		@Override
+		public void droneEvents(DroneEventBatch events, DroneDecisions decisions) {
+			batches++;
+			for(int i = 0; i < events.size(); i++){
+				if(events.getEvent(i) == DroneEvent.IDLING){
+					DroneView drone = events.getDrone(i);
+					int here = simulator.getPlaceIndex(drone.getStart().getName());
+					String next = simulator.getPlaceName((here + 1)%simulator.getPlaceCount());
+					decisions.setManifest(drone,next);
+					decisions.route(drone,next);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param calls how many times the controller has been handed a batch so far
+	 * @return how long each round after the warm up took and how long the ones where the controller was called took, sorted
+	 */
+	private static long[][] run(DroneController controller,LongSupplier calls,int droneCount,int rounds){
+		Random random = new Random(1);
+		List<Place> places = new ArrayList<Place>();
+		for(int i = 0; i < PLACES; i++){
+			double angle = 2*Math.PI*i/PLACES;
+			places.add(new Place("Stop "+i,new Position(34.42 + 0.02*Math.sin(angle),-119.70 + 0.02*Math.cos(angle),0)));
+		}
+		//More people than can be carried in the rounds, so the simulation doesn't end
+		Set<Person> people = new TreeSet<Person>();
+		for(int i = 0; i < 20*droneCount; i++){
+			Place start = places.get(random.nextInt(PLACES));
+			Place destination = places.get(random.nextInt(PLACES));
+			Person person = new Person(String.format("%08d",i),"Rider "+i,start.getName(),start.getPosition(),destination.getName(),PersonState.WAITING);
+			start.getWaitingToEmbark().add(person);
+			people.add(person);
+		}
+		Set<Drone> drones = new LinkedHashSet<Drone>();
+		for(int i = 0; i < droneCount; i++){
+			Drone drone = new Drone(controller,places.get(i%PLACES),places.get(i%PLACES),4);
+			drone.setState(DroneState.IDLING);
+			drones.add(drone);
+		}
+		Simulator simulator = new Simulator(new MySimulationController(),people,places,drones);
+
+		long[] times = new long[rounds];
+		long[] called = new long[rounds];
+		int done = 0;
+		int calledDone = 0;
+		for(int i = 0; i < WARM_UP + rounds; i++){
+			long before = calls.getAsLong();
+			long started = System.nanoTime();
+			if(!simulator.tick()){
+				break;
+			}
+			long took = System.nanoTime() - started;
+			if(i >= WARM_UP){
+				times[done++] = took;
+				if(calls.getAsLong() != before){
+					called[calledDone++] = took;
+				}
+			}
+		}
+		times = Arrays.copyOf(times,done);
+		Arrays.sort(times);
+		called = Arrays.copyOf(called,calledDone);
+		Arrays.sort(called);
+		return new long[][]{times,called};
+	}
+
+	private static String summary(long[] times){
+		if(times.length == 0){
+			return "no rounds";
+		}
+		long total = 0;
+		for(long t: times){
+			total += t;
+		}
+		return String.format("%d rounds, mean %.1f us, p50 %.1f us, p99 %.1f us, max %.1f us",times.length,total/1000.0/times.length,
+				times[times.length/2]/1000.0,times[(int) (times.length*0.99)]/1000.0,times[times.length - 1]/1000.0);
+	}
+
+	public static void main(String[] args) throws Exception {
+		int droneCount = (args.length > 0) ? Integer.parseInt(args[0]) : 100;
+		int rounds = (args.length > 1) ? Integer.parseInt(args[1]) : 5000;
+
+		ShuttleController shuttle = new ShuttleController();
+		long[][] local = run(shuttle,() -> shuttle.batches,droneCount,rounds);
+		RemoteDroneController remote = RemoteDroneController.launch(ShuttleController.class.getName());
+		long[][] hosted;
+		try {
+			hosted = run(remote,remote::getRoundTrips,droneCount,rounds);
+		}
+		finally{
+			remote.close();
+		}
+
+		System.out.println(droneCount+" drones");
+		System.out.println("In this JVM, every round:           "+summary(local[0]));
+		System.out.println("In this JVM, rounds with call backs: "+summary(local[1]));
+		System.out.println("In a host, every round:             "+summary(hosted[0]));
+		System.out.println("In a host, rounds with call backs:  "+summary(hosted[1]));
+	}
+
+}
@@ -0,0 +1,271 @@
+package simulator;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import simulator.enums.BudgetPolicy;
+import simulator.enums.DroneEvent;
+
+/**
+ * Times every call into the controllers, by controller and by kind of call back, and holds each controller to a
+ * budget of CPU time per round.  Times come from the calling thread's CPU clock where the JVM has one and the
+ * wall clock otherwise.  Timings go into power of two histograms so recording one doesn't allocate.
+ * Nothing is timed until the watchdog is enabled.
+ */
+public class ControllerWatchdog {
+	
+	private static final DroneEvent[] EVENTS = DroneEvent.values();
+	//The kind used for a whole batch handed to a BatchDroneController
+	static final int BATCH = EVENTS.length;
+	private static final int KINDS = EVENTS.length + 1;
+	//Bucket b holds times below 2^b nanoseconds
+	private static final int BUCKETS = 64;
+	
+	private final String[] names;
+	private final long[][][] histograms;
+	private final long[][] totalNanos;
+	private final long[][] maxNanos;
+	
+	//This round's time, how many rounds went over budget, and what has been done about it
+	private final long[] roundNanos;
+	private final long[] overBudgetRounds;
+	private final long[] droppedCallbacks;
+	private final boolean[] skipNextRound;
+	private final boolean[] disqualified;
+	private final long[] disqualifiedAt;
+	private final boolean[] warned;
+	
+	private boolean enabled;
+	//CPU nanoseconds a controller may use per round, 0 for no limit
+	private long budget;
+	private BudgetPolicy policy = BudgetPolicy.WARN;
+	
+	private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+	private final boolean cpuTime;
+	
+	ControllerWatchdog(String[] names){
+		this.names = names;
+		int controllers = names.length;
+		histograms = new long[controllers][KINDS][BUCKETS];
+		totalNanos = new long[controllers][KINDS];
+		maxNanos = new long[controllers][KINDS];
+		roundNanos = new long[controllers];
+		overBudgetRounds = new long[controllers];
+		droppedCallbacks = new long[controllers];
+		skipNextRound = new boolean[controllers];
+		disqualified = new boolean[controllers];
+		disqualifiedAt = new long[controllers];
+		warned = new boolean[controllers];
+		cpuTime = threads.isCurrentThreadCpuTimeSupported();
+	}
+	
+	public boolean isEnabled(){
+		return enabled;
+	}
+	
+	/**
+	 * Turn timing on or off, it is off to begin with
+	 */
+	public void setEnabled(boolean enabled){
+		if(enabled && cpuTime && !threads.isThreadCpuTimeEnabled()){
+			threads.setThreadCpuTimeEnabled(true);
+		}
+		this.enabled = enabled;
+	}
+	
+	/**
+	 * Hold every controller to a CPU time budget per round, this enables the watchdog
+	 * @param nanosPerRound 0 or less for no limit
+	 * @param policy what to do to a controller that goes over
+	 */
+	public void setBudget(long nanosPerRound,BudgetPolicy policy){
+		if(policy == null){
+			throw new IllegalArgumentException("Budget policy can't be null");
+		}
+		this.budget = Math.max(0,nanosPerRound);
+		this.policy = policy;
+		setEnabled(true);
+	}
+	
+	public long getBudget(){
+		return budget;
+	}
+	
+	public BudgetPolicy getPolicy(){
+		return policy;
+	}
+	
+	public int getControllerCount(){
+		return names.length;
+	}
+	
+	/**
+	 * Controllers are numbered in the order of their first drone
+	 * @return the company name of a controller
+	 */
+	public String getControllerName(int controller){
+		return names[controller];
+	}
+	
+	public long getCallCount(int controller,DroneEvent event){
+		return calls(controller,event.ordinal());
+	}
+	
+	/**
+	 * @return how many batches a BatchDroneController has been handed
+	 */
+	public long getBatchCount(int controller){
+		return calls(controller,BATCH);
+	}
+	
+	public long getTotalNanos(int controller){
+		long total = 0;
+		for(long nanos: totalNanos[controller]){
+			total += nanos;
+		}
+		return total;
+	}
+	
+	/**
+	 * @param fraction between 0 and 1, e.g., 0.99
+	 * @return an upper bound on that fraction of the controller's call times for this kind of call back, 0 if there were none
+	 */
+	public long getPercentileNanos(int controller,DroneEvent event,double fraction){
+		return percentile(controller,event.ordinal(),fraction);
+	}
+	
+	public long getOverBudgetRounds(int controller){
+		return overBudgetRounds[controller];
+	}
+	
+	/**
+	 * @return how many call backs weren't made because the controller was being skipped or was disqualified
+	 */
+	public long getDroppedCallbacks(int controller){
+		return droppedCallbacks[controller];
+	}
+	
+	public boolean isDisqualified(int controller){
+		return disqualified[controller];
+	}
+	
+	/**
+	 * @return the time to pass to record once the call is done
+	 */
+	long start(){
+		return cpuTime ? threads.getCurrentThreadCpuTime() : System.nanoTime();
+	}
+	
+	/**
+	 * Count a call that started at the given time towards the controller's histogram and this round's budget.
+	 * Only the controller's own thread records for it while a round's call backs are being made.
+	 */
+	void record(int controller,int kind,long started){
+		count(controller,kind,Math.max(0,start() - started));
+	}
+	
+	/**
+	 * Count a call that took this long
+	 */
+	void count(int controller,int kind,long nanos){
+		//The number of bits nanos needs, 0 for 0, so it is below 2 to that
+		histograms[controller][kind][64 - Long.numberOfLeadingZeros(nanos)]++;
+		totalNanos[controller][kind] += nanos;
+		maxNanos[controller][kind] = Math.max(maxNanos[controller][kind],nanos);
+		roundNanos[controller] += nanos;
+	}
+	
+	/**
+	 * @return true if the controller's call backs are being dropped
+	 */
+	boolean isBlocked(int controller){
+		return disqualified[controller] || skipNextRound[controller];
+	}
+	
+	void drop(int controller){
+		droppedCallbacks[controller]++;
+	}
+	
+	/**
+	 * Hold each controller to its budget for the round that just ended and start the next one
+	 */
+	void endRound(long tick){
+		for(int i = 0; i < names.length; i++){
+			skipNextRound[i] = false;
+			if((budget > 0) && (roundNanos[i] > budget) && !disqualified[i]){
+				overBudgetRounds[i]++;
+				switch (policy){
+					case SKIP:
+						skipNextRound[i] = true;
+						break;
+					case DISQUALIFY:
+						disqualified[i] = true;
+						disqualifiedAt[i] = tick;
+						System.out.println(String.format("Watchdog: %s disqualified at %d for using %.3f ms in a round, the budget is %.3f ms",names[i],tick,roundNanos[i]/1.0e6,budget/1.0e6));
+						break;
+					default:
+						break;
+				}
+				if(!warned[i] && (policy != BudgetPolicy.DISQUALIFY)){
+					warned[i] = true;
+					System.out.println(String.format("Watchdog: %s used %.3f ms in the round at %d, the budget is %.3f ms",names[i],roundNanos[i]/1.0e6,tick,budget/1.0e6));
+				}
+			}
+			roundNanos[i] = 0;
+		}
+	}
+	
+	/**
+	 * @return a table of how long each controller took, for the end of the run
+	 */
+	public String report(){
+		StringBuffer sb = new StringBuffer("Controller time ("+(cpuTime ? "CPU" : "wall")+")\n");
+		for(int i = 0; i < names.length; i++){
+			sb.append(String.format("%s: %.3f ms",names[i],getTotalNanos(i)/1.0e6));
+			if(budget > 0){
+				sb.append(String.format(", %d rounds over a %.3f ms budget",overBudgetRounds[i],budget/1.0e6));
+			}
+			if(droppedCallbacks[i] > 0){
+				sb.append(", "+droppedCallbacks[i]+" call backs dropped");
+			}
+			if(disqualified[i]){
+				sb.append(", disqualified at "+disqualifiedAt[i]);
+			}
+			sb.append("\n");
+			for(int kind = 0; kind < KINDS; kind++){
+				long calls = calls(i,kind);
+				if(calls > 0){
+					sb.append(String.format("\t%-26s %10d calls, mean %10.0f ns, p50 < %10d ns, p99 < %10d ns, max %10d ns\n",
+							(kind == BATCH) ? "BATCH" : EVENTS[kind].name(),calls,totalNanos[i][kind]/(double) calls,
+							percentile(i,kind,0.5),percentile(i,kind,0.99),maxNanos[i][kind]));
+				}
+			}
+		}
+		return sb.toString();
+	}
+	
+	private long calls(int controller,int kind){
+		long calls = 0;
+		for(long count: histograms[controller][kind]){
+			calls += count;
+		}
+		return calls;
+	}
+	
+	private long percentile(int controller,int kind,double fraction){
+		long calls = calls(controller,kind);
+		if(calls == 0){
+			return 0;
+		}
+		long wanted = (long) Math.ceil(fraction*calls);
+		long seen = 0;
+		for(int b = 0; b < BUCKETS; b++){
+			seen += histograms[controller][kind][b];
+			if(seen >= Math.max(1,wanted)){
+				return (b >= 63) ? Long.MAX_VALUE : (1L << b);
+			}
+		}
+		return Long.MAX_VALUE;
+	}
+
+}
@@ -0,0 +1,50 @@
+package simulator;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import simulator.enums.DroneEvent;
+
+public class ControllerWatchdogTest {
+
+	private static long bound(long nanos){
+		ControllerWatchdog watchdog = new ControllerWatchdog(new String[]{"Company"});
+		watchdog.count(0,DroneEvent.IDLING.ordinal(),nanos);
+		return watchdog.getPercentileNanos(0,DroneEvent.IDLING,1.0);
+	}
+
+	@Test
+	//A time goes in the first bucket whose power of two it is below
+	public void testBuckets() {
+		assertEquals(1,bound(0));
+		assertEquals(2,bound(1));
+		assertEquals(4,bound(2));
+		assertEquals(4,bound(3));
+		assertEquals(8,bound(4));
+		assertEquals(1024,bound(1000));
+		assertEquals(2048,bound(1024));
+		assertEquals(1L << 62,bound((1L << 62) - 1));
+		assertEquals(Long.MAX_VALUE,bound(Long.MAX_VALUE));
+	}
+
+	@Test
+	public void testPercentiles() {
+		ControllerWatchdog watchdog = new ControllerWatchdog(new String[]{"Company 0","Company 1"});
+		int kind = DroneEvent.EMBARKING_START.ordinal();
+		for(int i = 0; i < 99; i++){
+			watchdog.count(1,kind,100);
+		}
+		watchdog.count(1,kind,5000);
+
+		assertEquals(0,watchdog.getCallCount(0,DroneEvent.EMBARKING_START));
+		assertEquals(0,watchdog.getPercentileNanos(0,DroneEvent.EMBARKING_START,0.5));
+		assertEquals(100,watchdog.getCallCount(1,DroneEvent.EMBARKING_START));
+		assertEquals(99*100+5000,watchdog.getTotalNanos(1));
+		assertEquals(128,watchdog.getPercentileNanos(1,DroneEvent.EMBARKING_START,0.5));
+		assertEquals(128,watchdog.getPercentileNanos(1,DroneEvent.EMBARKING_START,0.99));
+		assertEquals(8192,watchdog.getPercentileNanos(1,DroneEvent.EMBARKING_START,1.0));
+		assertTrue(watchdog.report().contains("max       5000 ns"));
+	}
+
+}
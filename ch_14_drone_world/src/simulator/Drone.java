@@ -1,47 +1,48 @@
 package simulator;
 
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.UUID;
 
 import simulator.enums.DroneState;
 import simulator.interfaces.DroneController;
+import simulator.interfaces.DroneView;
 
-public class Drone implements Comparable<Drone>{
+public class Drone implements Comparable<Drone>, DroneView{
 	
 	private static final int ONE_SECOND = 1000;
+	
 	//private static final int ONE_MINUTE = 60*ONE_SECOND;
 	//private static final int ONE_HOUR = 60*ONE_MINUTE;
 	
 	//This is the controller that makes decisions for this drone
 	private DroneController controller;
 	
-	// Id to identify the drone by e.g., "000001"
-	private String id;
+	// Id to identify the drone by, what drones are ordered, hashed and told apart by
+	private final String id;
 	//This is the human identifiable name of the individual drone, e.g, "Hopper"
 	private String name;
 	//This is the name of a company that might have several Drones, e.g., "Patterson Drone Inc."
 	private String companyName;
 	
-	private Place start;
-	private Position position;
-	private Place destination;
+	//Where this drone's position, charge, state, timers, start and destination live.  A drone on its own has
+	//a detached store with just itself in it, the simulator moves all of its drones into one shared store
+	private DroneStore store;
+	// This drone's slot in the store, the simulator also uses it to keep track of the drone
+	int slot;
 	
 	//The list of places that passengers are told the drone is going to - effects their boarding
-	private Set<String> manifest;
-	
-	private DroneState state;
+	private Manifest manifest;
 	
-	// Time since starting the load of the last passenger
-	private long embarkingStart;
 	// How long it takes to load a passenger in milliseconds
 	private int embarkingDuration;
 	// How many people can embark at once
 	private int embarkingCapacity;
 	private Set<Person> embarkers;
 	
-	private long disembarkingStart;
 	private int disembarkingDuration;
 	private int disembarkingCapacity;
 	private Set<Person> disembarkers;
@@ -51,13 +52,6 @@ public class Drone implements Comparable<Drone>{
 	//How many milliseconds it takes to lower from to cruising altitude
 	private long descensionTime;
 	
-	//Time of start of transit
-	private long transitStart;
-	private long transitEnd;
-	
-	// between 0.0 and 1.0 with 1.0 full charged
-	private double charge;
-	
 	// Percentage of charged gained per second while recharging
 	private double rechargeRate;
 	
@@ -71,6 +65,9 @@ public class Drone implements Comparable<Drone>{
 	// meters per second;
 	private double speed;
 	
+	//What controllers are shown of this drone, made the first time it is needed
+	private LiveDrone view;
+	
 	public DroneController getController() {
 		return controller;
 	}
@@ -83,10 +80,6 @@ public class Drone implements Comparable<Drone>{
 		return id;
 	}
 
-	void setId(String id) {
-		this.id = id;
-	}
-	
 	public String getName() {
 		return name;
 	}
@@ -104,27 +97,43 @@ public class Drone implements Comparable<Drone>{
 	}
 
 	public Place getStart() {
-		return start;
+		return store.getPlace(store.start[slot]);
 	}
 	
 	void setStart(Place start) {
-		this.start = start;
+		store.start[slot] = store.indexOf(start);
 	}
 	
+	/**
+	 * @return where the drone is now, worked out from its leg if it is in transit.  This only reads the store, so it
+	 * is safe to call from outside the simulation thread, e.g., to draw the drone.
+	 */
 	public Position getPosition(){
-		return position;
+		return store.positionOf(slot);
 	}
 	
 	void setPosition(Position position){
-		this.position = position;
+		setLocation(position.getLatitude(),position.getLongitude(),position.getHeight());
+	}
+	
+	void setLocation(double latitude,double longitude,double height){
+		store.positionTicks[slot] = DroneStore.UP_TO_DATE;
+		store.latitude[slot] = latitude;
+		store.longitude[slot] = longitude;
+		store.height[slot] = height;
+	}
+	
+	void setHeight(double height){
+		store.updatePosition(slot);
+		store.height[slot] = height;
 	}
 
 	public Place getDestination() {
-		return destination;
+		return store.getPlace(store.destination[slot]);
 	}
 	
 	void setDestination(Place place){
-		destination = place;
+		store.destination[slot] = store.indexOf(place);
 	}
 
 	public Set<String> getManifest() {
@@ -132,23 +141,36 @@ public class Drone implements Comparable<Drone>{
 	}
 
 	void setManifest(Set<String> manifest) {
-		this.manifest = manifest;
+		if((manifest == null) || (manifest instanceof Manifest)){
+			this.manifest = (Manifest) manifest;
+		}
+		else{
+			//Over the same places as the one it replaces
+			this.manifest = new Manifest((this.manifest == null) ? PlaceNames.NONE : this.manifest.names(),manifest);
+		}
+	}
+	
+	/**
+	 * @return the manifest as bits by place index
+	 */
+	Manifest peekManifest() {
+		return manifest;
 	}
 
 	public DroneState getState(){
-		return this.state;
+		return store.getState(slot);
 	}
 
 	void setState(DroneState state) {
-		this.state = state;
+		store.setState(slot,state);
 	}
 
 	public long getEmbarkingStart() {
-		return embarkingStart;
+		return store.embarkingStart[slot];
 	}
 
 	void setEmbarkingStart(long time) {
-		this.embarkingStart= time;
+		store.embarkingStart[slot] = time;
 	}
 
 	public int getEmbarkingDuration() {
@@ -164,11 +186,11 @@ public class Drone implements Comparable<Drone>{
 	}
 
 	public long getDisembarkingStart() {
-		return disembarkingStart;
+		return store.disembarkingStart[slot];
 	}
 
 	void setDisembarkingStart(long disembarkingStart) {
-		this.disembarkingStart = disembarkingStart;
+		store.disembarkingStart[slot] = disembarkingStart;
 	}
 
 	public int getDisembarkingDuration() {
@@ -192,27 +214,30 @@ public class Drone implements Comparable<Drone>{
 	}
 
 	public long getTransitStart() {
-		return transitStart;
+		return store.transitStart[slot];
 	}
 
 	void setTransitStart(long transitStart) {
-		this.transitStart = transitStart;
+		store.transitStart[slot] = transitStart;
 	}
 
 	public long getTransitEnd() {
-		return transitEnd;
+		return store.transitEnd[slot];
 	}
 
 	void setTransitEnd(long transitEnd) {
-		this.transitEnd = transitEnd;
+		store.transitEnd[slot] = transitEnd;
 	}
 
 	public double getCharge() {
-		return charge;
+		//A recharging drone only works out its charge when asked
+		store.updateCharge(slot);
+		return store.charge[slot];
 	}
 
 	void setCharge(double charge) {
-		this.charge = charge;
+		store.chargeTicks[slot] = DroneStore.UP_TO_DATE;
+		store.charge[slot] = charge;
 	}
 
 	public double getRechargeRate() {
@@ -246,21 +271,101 @@ public class Drone implements Comparable<Drone>{
 	public double getSpeed(){
 		return speed;
 	}
+	
+	/**
+	 * Refuse changes to this drone's sets and manifest, for the copies the simulator shares between controllers
+	 */
+	void makeReadOnly(){
+		if(embarkers != null){
+			embarkers = Collections.unmodifiableSet(embarkers);
+		}
+		if(disembarkers != null){
+			disembarkers = Collections.unmodifiableSet(disembarkers);
+		}
+		if(passengers != null){
+			passengers = Collections.unmodifiableSet(passengers);
+		}
+		if(manifest != null){
+			manifest.makeReadOnly();
+		}
+	}
+
+	@Override
+	public Drone snapshot(){
+		return new Drone(this);
+	}
+	
+	/**
+	 * @return a read-only drone that reads this one's live state, what controllers are handed in call backs
+	 */
+	Drone view(){
+		if(view == null){
+			view = new LiveDrone(this);
+		}
+		return view;
+	}
+	
+	/**
+	 * @return the drone whose state this is, the simulated drone for a LiveDrone
+	 */
+	Drone source(){
+		return this;
+	}
+	
+	DroneStore getStore(){
+		return store;
+	}
+	
+	/**
+	 * Move this drone's state into a new slot in another store
+	 * @param newStore
+	 */
+	void moveTo(DroneStore newStore){
+		Place oldStart = getStart();
+		Place oldDestination = getDestination();
+		DroneState oldState = getState();
+		long oldEmbarkingStart = getEmbarkingStart();
+		long oldDisembarkingStart = getDisembarkingStart();
+		long oldTransitStart = getTransitStart();
+		long oldTransitEnd = getTransitEnd();
+		double oldCharge = getCharge();
+		Position oldPosition = getPosition();
+		
+		store = newStore;
+		slot = store.add();
+		setStart(oldStart);
+		setDestination(oldDestination);
+		setPosition(oldPosition);
+		setState(oldState);
+		setEmbarkingStart(oldEmbarkingStart);
+		setDisembarkingStart(oldDisembarkingStart);
+		setTransitStart(oldTransitStart);
+		setTransitEnd(oldTransitEnd);
+		setCharge(oldCharge);
+	}
 
 	public Drone(DroneController controller, Place start,Place destination,int capacity) {
+		// Make up a unique id
+		this(controller,UUID.randomUUID().toString(),controller.getNextDroneName(),start,destination,capacity);
+	}
+	
+	/**
+	 * Make a drone whose id and name have already been given out, e.g., a controller host's copy of one of its drones
+	 */
+	Drone(DroneController controller,String id,String name,Place start,Place destination,int capacity) {
 		
 		this.controller = controller;
+		this.store = new DroneStore(1,true);
+		this.slot = store.add();
 		
-		// Make up a unique id
-		this.id = UUID.randomUUID().toString();
+		this.id = id;
 		
-		//Ask controller for drone and company name
-		this.name = this.controller.getNextDroneName();
+		this.name = name;
 		this.companyName = this.controller.getCompanyName();
 		
 		//Set defaults
 		speed = 100.0;
-		charge = 1.0;
+		setCharge(1.0);
 		rechargeRate = 0.10;
 		dischargeRate = 0.0002;
 		
@@ -275,10 +380,10 @@ public class Drone implements Comparable<Drone>{
 		ascensionTime = 60*ONE_SECOND;
 		descensionTime = 60*ONE_SECOND;
 		
-		this.start = start;
-		this.position = start.getPosition();
-		this.destination = destination;
-		this.manifest = new TreeSet<String>();
+		setStart(start);
+		setPosition(start.getPosition());
+		setDestination(destination);
+		this.manifest = new Manifest(PlaceNames.NONE);
 		
 		if(capacity < 1){
 			throw new IllegalArgumentException("Drones must be able to carry 1 or greater");
@@ -289,24 +394,48 @@ public class Drone implements Comparable<Drone>{
 		
 	}
 	
+	/**
+	 * Make a drone that has nothing of its own but its id, for a LiveDrone
+	 */
+	Drone(String id){
+		this.id = id;
+	}
+	
 	public Drone(Drone drone){
+		this(drone,null);
+	}
+	
+	/**
+	 * Copy a drone, using already made copies of its places if there are any
+	 * @param drone
+	 * @param placeCopies copies to use for the start and destination, null to copy them
+	 */
+	Drone(Drone drone,Map<Place,Place> placeCopies){
+		this(drone,placeCopies,new DroneStore(1,true));
+	}
+	
+	/**
+	 * Copy a drone into a detached store that other copies may share
+	 */
+	Drone(Drone drone,Map<Place,Place> placeCopies,DroneStore store){
 		if(drone == null){
 			throw new IllegalArgumentException("Can't copy construct null");
 		}
 		
 		this.setController(drone.getController());
+		this.store = store;
+		this.slot = store.add();
 		
-		this.setId(drone.getId());
+		this.id = drone.id;
 		this.setName(drone.getName());
 		this.setCompanyName(drone.getCompanyName());
-		this.setStart(new Place(drone.getStart()));
-		this.setPosition(new Position(drone.getPosition()));
-		this.setDestination(new Place(drone.getDestination()));
-		this.setManifest(new TreeSet<String>());
-		this.getManifest().addAll(drone.getManifest());
+		this.setStart(copyOf(drone.getStart(),placeCopies));
+		this.setPosition(drone.getPosition());
+		this.setDestination(copyOf(drone.getDestination(),placeCopies));
+		this.setManifest(new Manifest(drone.peekManifest()));
 		this.setState(drone.getState());
 		
-		this.embarkingStart = drone.getEmbarkingStart();
+		this.setEmbarkingStart(drone.getEmbarkingStart());
 		this.embarkingDuration = drone.getEmbarkingDuration();
 		this.embarkingCapacity = drone.getEmbarkingCapacity();
 		if(drone.getEmbarkers() == null){
@@ -319,7 +448,7 @@ public class Drone implements Comparable<Drone>{
 			}
 		}
 		
-		this.disembarkingStart = drone.getDisembarkingStart();
+		this.setDisembarkingStart(drone.getDisembarkingStart());
 		this.disembarkingDuration = drone.getDisembarkingDuration();
 		this.disembarkingCapacity = drone.getDisembarkingCapacity();
 		if(drone.getDisembarkers() == null){
@@ -335,8 +464,8 @@ public class Drone implements Comparable<Drone>{
 		this.ascensionTime = drone.getAscensionTime();
 		this.descensionTime = drone.getDescensionTime();
 		
-		this.transitStart = drone.getTransitStart();
-		this.transitEnd = drone.getTransitEnd();
+		this.setTransitStart(drone.getTransitStart());
+		this.setTransitEnd(drone.getTransitEnd());
 		
 		this.setCharge(drone.getCharge());
 		this.setRechargeRate(drone.getRechargeRate());
@@ -362,59 +491,45 @@ public class Drone implements Comparable<Drone>{
 
 
 
+	private static Place copyOf(Place place,Map<Place,Place> placeCopies){
+		Place copy = (placeCopies == null) ? null : placeCopies.get(place);
+		return (copy == null) ? new Place(place) : copy;
+	}
+
 	@Override
 	public int hashCode() {
-		final int prime = 31;
-		int result = 1;
-		result = prime * result + (int) (ascensionTime ^ (ascensionTime >>> 32));
-		result = prime * result + capacity;
-		long temp;
-		temp = Double.doubleToLongBits(charge);
-		result = prime * result + (int) (temp ^ (temp >>> 32));
-		result = prime * result + ((companyName == null) ? 0 : companyName.hashCode());
-		result = prime * result + ((controller == null) ? 0 : controller.hashCode());
-		result = prime * result + (int) (descensionTime ^ (descensionTime >>> 32));
-		result = prime * result + ((destination == null) ? 0 : destination.hashCode());
-		temp = Double.doubleToLongBits(dischargeRate);
-		result = prime * result + (int) (temp ^ (temp >>> 32));
-		result = prime * result + ((disembarkers == null) ? 0 : disembarkers.hashCode());
-		result = prime * result + disembarkingCapacity;
-		result = prime * result + disembarkingDuration;
-		result = prime * result + (int) (disembarkingStart ^ (disembarkingStart >>> 32));
-		result = prime * result + ((embarkers == null) ? 0 : embarkers.hashCode());
-		result = prime * result + embarkingCapacity;
-		result = prime * result + embarkingDuration;
-		result = prime * result + (int) (embarkingStart ^ (embarkingStart >>> 32));
-		result = prime * result + ((id == null) ? 0 : id.hashCode());
-		result = prime * result + ((manifest == null) ? 0 : manifest.hashCode());
-		result = prime * result + ((name == null) ? 0 : name.hashCode());
-		result = prime * result + ((passengers == null) ? 0 : passengers.hashCode());
-		result = prime * result + ((position == null) ? 0 : position.hashCode());
-		temp = Double.doubleToLongBits(rechargeRate);
-		result = prime * result + (int) (temp ^ (temp >>> 32));
-		temp = Double.doubleToLongBits(speed);
-		result = prime * result + (int) (temp ^ (temp >>> 32));
-		result = prime * result + ((start == null) ? 0 : start.hashCode());
-		result = prime * result + ((state == null) ? 0 : state.hashCode());
-		result = prime * result + (int) (transitEnd ^ (transitEnd >>> 32));
-		result = prime * result + (int) (transitStart ^ (transitStart >>> 32));
-		return result;
+		return id.hashCode();
 	}
 
+	/**
+	 * Drones are the same drone if they have the same id, use deepEquals to compare the rest
+	 */
 	@Override
 	public boolean equals(Object obj) {
 		if (this == obj)
 			return true;
-		if (obj == null)
-			return false;
 		if (!(obj instanceof Drone))
 			return false;
-		Drone other = (Drone) obj;
+		return id.equals(((Drone) obj).id);
+	}
+
+	/**
+	 * Compare everything about two drones, not just which drone they are, e.g., a drone with a copy of it
+	 */
+	public boolean deepEquals(Drone other) {
+		if (other != null && other.source() != other)
+			return source().deepEquals(other.source());
+		if (source() != this)
+			return source().deepEquals(other);
+		if (this == other)
+			return true;
+		if (other == null)
+			return false;
 		if (ascensionTime != other.ascensionTime)
 			return false;
 		if (capacity != other.capacity)
 			return false;
-		if (Double.doubleToLongBits(charge) != Double.doubleToLongBits(other.charge))
+		if (Double.doubleToLongBits(getCharge()) != Double.doubleToLongBits(other.getCharge()))
 			return false;
 		if (companyName == null) {
 			if (other.companyName != null)
@@ -428,10 +543,10 @@ public class Drone implements Comparable<Drone>{
 			return false;
 		if (descensionTime != other.descensionTime)
 			return false;
-		if (destination == null) {
-			if (other.destination != null)
+		if (getDestination() == null) {
+			if (other.getDestination() != null)
 				return false;
-		} else if (!destination.equals(other.destination))
+		} else if (!getDestination().equals(other.getDestination()))
 			return false;
 		if (Double.doubleToLongBits(dischargeRate) != Double.doubleToLongBits(other.dischargeRate))
 			return false;
@@ -444,7 +559,7 @@ public class Drone implements Comparable<Drone>{
 			return false;
 		if (disembarkingDuration != other.disembarkingDuration)
 			return false;
-		if (disembarkingStart != other.disembarkingStart)
+		if (getDisembarkingStart() != other.getDisembarkingStart())
 			return false;
 		if (embarkers == null) {
 			if (other.embarkers != null)
@@ -455,12 +570,9 @@ public class Drone implements Comparable<Drone>{
 			return false;
 		if (embarkingDuration != other.embarkingDuration)
 			return false;
-		if (embarkingStart != other.embarkingStart)
+		if (getEmbarkingStart() != other.getEmbarkingStart())
 			return false;
-		if (id == null) {
-			if (other.id != null)
-				return false;
-		} else if (!id.equals(other.id))
+		if (!id.equals(other.id))
 			return false;
 		if (manifest == null) {
 			if (other.manifest != null)
@@ -477,52 +589,35 @@ public class Drone implements Comparable<Drone>{
 				return false;
 		} else if (!passengers.equals(other.passengers))
 			return false;
-		if (position == null) {
-			if (other.position != null)
+		if (getPosition() == null) {
+			if (other.getPosition() != null)
 				return false;
-		} else if (!position.equals(other.position))
+		} else if (!getPosition().equals(other.getPosition()))
 			return false;
 		if (Double.doubleToLongBits(rechargeRate) != Double.doubleToLongBits(other.rechargeRate))
 			return false;
 		if (Double.doubleToLongBits(speed) != Double.doubleToLongBits(other.speed))
 			return false;
-		if (start == null) {
-			if (other.start != null)
+		if (getStart() == null) {
+			if (other.getStart() != null)
 				return false;
-		} else if (!start.equals(other.start))
+		} else if (!getStart().equals(other.getStart()))
 			return false;
-		if (state != other.state)
+		if (getState() != other.getState())
 			return false;
-		if (transitEnd != other.transitEnd)
+		if (getTransitEnd() != other.getTransitEnd())
 			return false;
-		if (transitStart != other.transitStart)
+		if (getTransitStart() != other.getTransitStart())
 			return false;
 		return true;
 	}
 
 	@Override
 	public int compareTo(Drone other) {
-		if (this.equals(other)){
-			return 0;
-		}
-		
 		if (other == null){
 			return 1;
 		}
-		
-		if (this.getId() == null) {
-			if (other.getId() != null){
-				return -1;
-			}
-			else{
-				return 0;
-			}
-		} 
-		else if(other.getId() == null){
-			return 1;
-		}
-		
-		return(this.getId().compareTo(other.getId()));
+		return id.compareTo(other.id);
 	}
 
 }
@@ -0,0 +1,138 @@
+package simulator;
+
+import java.util.ArrayList;
+import java.util.Set;
+
+import simulator.interfaces.DroneView;
+import simulator.interfaces.PlaceView;
+
+/**
+ * The routes and manifests a BatchDroneController hands back for a round.
+ * They are applied in the order they were made, once droneEvents returns, exactly as if routeDrone and
+ * setDroneManifest had been called.
+ */
+public final class DroneDecisions {
+	
+	//The simulator's places, what manifests are kept over
+	private final PlaceNames names;
+	private final ArrayList<DroneView> drones = new ArrayList<DroneView>();
+	//The index of the place to route to, the manifest to set or a plan to submit
+	private final ArrayList<Object> decisions = new ArrayList<Object>();
+	
+	DroneDecisions(PlaceNames names){
+		this.names = names;
+	}
+	
+	/**
+	 * Send a drone to a new destination
+	 */
+	public void route(DroneView drone,String place){
+		if((drone == null) || (place == null)){
+			throw new IllegalArgumentException("Can't route a null drone or to a null place");
+		}
+		route(drone,names.indexOf(place),place);
+	}
+	
+	/**
+	 * Send a drone to this place, told apart from others with its name by its position
+	 */
+	public void route(DroneView drone,PlaceView place){
+		if((drone == null) || (place == null)){
+			throw new IllegalArgumentException("Can't route a null drone or to a null place");
+		}
+		route(drone,names.indexOf(place),place.getName());
+	}
+	
+	/**
+	 * Send a drone to the place with this index
+	 */
+	void route(DroneView drone,int place){
+		route(drone,place,null);
+	}
+	
+	private void route(DroneView drone,int place,String name){
+		if((place < 0) || (place >= names.size())){
+			throw new IllegalArgumentException("Unable to find a place called:"+((name == null) ? place : name));
+		}
+		drones.add(drone);
+		decisions.add(place);
+	}
+	
+	/**
+	 * Tell passengers where the drone intends to go
+	 */
+	public void setManifest(DroneView drone,Set<String> manifest){
+		setManifest(drone,(manifest == null) ? new Manifest(names) : new Manifest(names,manifest));
+	}
+	
+	public void setManifest(DroneView drone,String place){
+		Manifest manifest = new Manifest(names);
+		int index = names.indexOf(place);
+		if(index >= 0){
+			manifest.add(index);
+		}
+		setManifest(drone,manifest);
+	}
+	
+	/**
+	 * Keep a manifest as it is if it is over the simulator's places, names that aren't places are dropped
+	 */
+	void setManifest(DroneView drone,Manifest manifest){
+		if(drone == null){
+			throw new IllegalArgumentException("Can't set the manifest of a null drone");
+		}
+		if(manifest.names() != names){
+			manifest = new Manifest(names,manifest);
+		}
+		manifest.retainPlaces();
+		drones.add(drone);
+		decisions.add(manifest);
+	}
+	
+	/**
+	 * A plan submitted from a controller thread, handed to the simulator along with the rest
+	 */
+	void submit(CommandBuffer commands){
+		drones.add(null);
+		decisions.add(commands);
+	}
+	
+	public int size(){
+		return drones.size();
+	}
+	
+	/**
+	 * @return the drone a decision is for, null for a plan
+	 */
+	DroneView getDrone(int index){
+		return drones.get(index);
+	}
+	
+	/**
+	 * @return the index of the place to route to as an Integer, the Manifest to set or a plan
+	 */
+	Object getDecision(int index){
+		return decisions.get(index);
+	}
+	
+	void apply(Simulator simulator){
+		for(int i = 0; i < drones.size(); i++){
+			Object decision = decisions.get(i);
+			if(decision instanceof Integer){
+				simulator.applyRoute(drones.get(i),(Integer) decision);
+			}
+			else if(decision instanceof CommandBuffer){
+				simulator.submit((CommandBuffer) decision);
+			}
+			else{
+				simulator.applyManifest(drones.get(i),(Manifest) decision);
+			}
+		}
+	}
+	
+	void clear(){
+		drones.clear();
+		decisions.clear();
+	}
+
+}
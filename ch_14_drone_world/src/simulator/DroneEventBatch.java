@@ -0,0 +1,88 @@
+package simulator;
+
+import java.util.Arrays;
+
+import simulator.enums.DroneEvent;
+import simulator.interfaces.DroneView;
+
+/**
+ * The call backs for one BatchDroneController's drones in a round, in the order they happened.
+ * The batch is reused every round, so read it during droneEvents and don't keep it.  The drones are live views,
+ * they show how the drone is at the end of the round rather than when the event happened.
+ */
+public final class DroneEventBatch {
+	
+	private static final DroneEvent[] EVENTS = DroneEvent.values();
+	
+	private long tick;
+	private int size;
+	private byte[] events = new byte[16];
+	private Drone[] drones = new Drone[16];
+	private double[] values = new double[16];
+	
+	DroneEventBatch(){
+	}
+	
+	/**
+	 * @return the round the events happened in
+	 */
+	public long getTick(){
+		return tick;
+	}
+	
+	public int size(){
+		return size;
+	}
+	
+	public DroneEvent getEvent(int index){
+		checkIndex(index);
+		return EVENTS[events[index]];
+	}
+	
+	public DroneView getDrone(int index){
+		checkIndex(index);
+		return drones[index];
+	}
+	
+	/**
+	 * @return the drone as a Drone, for the call backs that take one
+	 */
+	Drone peekDrone(int index){
+		checkIndex(index);
+		return drones[index];
+	}
+	
+	/**
+	 * @return the percent for TRANSITING and RECHARGING events, 0 for the rest
+	 */
+	public double getValue(int index){
+		checkIndex(index);
+		return values[index];
+	}
+	
+	void add(long tick,DroneEvent event,Drone drone,double value){
+		if(size == events.length){
+			int capacity = events.length*2;
+			events = Arrays.copyOf(events,capacity);
+			drones = Arrays.copyOf(drones,capacity);
+			values = Arrays.copyOf(values,capacity);
+		}
+		this.tick = tick;
+		events[size] = (byte) event.ordinal();
+		drones[size] = drone;
+		values[size] = value;
+		size++;
+	}
+	
+	void clear(){
+		//Views are made once per drone, so there is nothing to let go of
+		size = 0;
+	}
+	
+	private void checkIndex(int index){
+		if((index < 0) || (index >= size)){
+			throw new IndexOutOfBoundsException("Index:"+index+" size:"+size);
+		}
+	}
+
+}
@@ -0,0 +1,23 @@
+package simulator;
+
+/**
+ * How a drone moves and charges during one round, worked out before it is applied.
+ * The simulator reuses one of these for every drone.
+ */
+class DroneStep {
+	
+	double height;
+	
+	double charge;
+	boolean outOfCharge;
+	boolean arrived;
+	//Rounds flown on the current leg or spent on the charger
+	long ticks;
+	//How far along the trip the drone is for the transit call back
+	double progress;
+	
+	boolean fullyCharged;
+	//Crossed one of the marks that a recharging drone tells its controller about
+	boolean alert;
+
+}
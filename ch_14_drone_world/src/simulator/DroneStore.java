@@ -0,0 +1,303 @@
+package simulator;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+import simulator.enums.DroneState;
+
+/**
+ * The parts of a drone that change while it flies, kept in parallel arrays indexed by slot.
+ * A drone is a view over one slot, so sweeping every drone's position, charge and timers walks a few
+ * contiguous arrays instead of following references from each drone object.
+ * Places are kept in a table and drones refer to them by index.
+ * Copies of drones live in detached stores, which leave out the legs and recharging that only the simulator's own
+ * store needs.  Copies made together, e.g., a round's snapshot, share one.
+ */
+class DroneStore {
+
+	private static final DroneState[] STATES = DroneState.values();
+	//A drone that hasn't been given a state yet
+	private static final byte NO_STATE = -1;
+	static final int NO_LEG = -1;
+	static final long UP_TO_DATE = -1;
+	static final long NOT_CHARGING = Long.MIN_VALUE;
+	//Place tables up to this size are searched rather than hashed
+	private static final int SEARCHED_PLACES = 8;
+
+	private int size;
+
+	double[] latitude;
+	double[] longitude;
+	double[] height;
+	double[] charge;
+	private byte[] state;
+	//How many drones are in each state, the ones without one first
+	private final int[] stateCounts = new int[STATES.length + 1];
+
+	long[] embarkingStart;
+	long[] disembarkingStart;
+	long[] transitStart;
+	long[] transitEnd;
+
+	//Indexes into the place table
+	int[] start;
+	int[] destination;
+	
+	//The straight leg a drone in transit is flying, worked out when it sets off or is rerouted, null when detached
+	//The round at the start of the leg, and the charge and position the drone had then
+	long[] legStart;
+	double[] legCharge;
+	double[] legLatitude;
+	double[] legLongitude;
+	double[] legHeight;
+	//Where the leg ends, NO_LEG until it has been worked out
+	int[] legDestination;
+	double[] legTargetHeight;
+	//How much of the leg is flown each round
+	double[] legFraction;
+	//The rounds on which the drone gets there and on which it runs out of charge
+	long[] legArrival;
+	long[] legEmpty;
+	//How many rounds along the leg the drone is, if its position hasn't been worked out yet, otherwise UP_TO_DATE
+	long[] positionTicks;
+	
+	//The round a drone went on the charger and its charge then, NOT_CHARGING when it isn't recharging, null when detached
+	long[] rechargeStart;
+	double[] rechargeCharge;
+	//How many rounds of charge to add, if the charge hasn't been worked out yet, otherwise UP_TO_DATE
+	long[] chargeTicks;
+	double[] rechargePerTick;
+
+	//The place table, with each place's position unpacked so it can be read without making a copy
+	private int placeCount;
+	private Place[] places;
+	double[] placeLatitude;
+	double[] placeLongitude;
+	double[] placeHeight;
+	//Made once the table is too big to search, see indexOf
+	private IdentityHashMap<Place,Integer> placeIndex;
+
+	DroneStore(int capacity){
+		this(capacity,false);
+	}
+
+	/**
+	 * @param detached true for a store of copies, whose drones are never flown or recharged by the simulator
+	 */
+	DroneStore(int capacity,boolean detached){
+		if(capacity < 1){
+			capacity = 1;
+		}
+		latitude = new double[capacity];
+		longitude = new double[capacity];
+		height = new double[capacity];
+		charge = new double[capacity];
+		state = new byte[capacity];
+		embarkingStart = new long[capacity];
+		disembarkingStart = new long[capacity];
+		transitStart = new long[capacity];
+		transitEnd = new long[capacity];
+		start = new int[capacity];
+		destination = new int[capacity];
+		positionTicks = new long[capacity];
+		chargeTicks = new long[capacity];
+
+		places = new Place[2];
+		placeLatitude = new double[2];
+		placeLongitude = new double[2];
+		placeHeight = new double[2];
+		if(detached){
+			return;
+		}
+		legStart = new long[capacity];
+		legCharge = new double[capacity];
+		legLatitude = new double[capacity];
+		legLongitude = new double[capacity];
+		legHeight = new double[capacity];
+		legDestination = new int[capacity];
+		legTargetHeight = new double[capacity];
+		legFraction = new double[capacity];
+		legArrival = new long[capacity];
+		legEmpty = new long[capacity];
+		rechargeStart = new long[capacity];
+		rechargeCharge = new double[capacity];
+		rechargePerTick = new double[capacity];
+	}
+	
+	/**
+	 * @return true if this store has no legs or recharging, only copies of drones
+	 */
+	boolean isDetached(){
+		return legStart == null;
+	}
+
+	int size(){
+		return size;
+	}
+
+	/**
+	 * @return a new slot, growing the arrays if needed
+	 */
+	int add(){
+		if(size == latitude.length){
+			int capacity = latitude.length*2;
+			latitude = Arrays.copyOf(latitude,capacity);
+			longitude = Arrays.copyOf(longitude,capacity);
+			height = Arrays.copyOf(height,capacity);
+			charge = Arrays.copyOf(charge,capacity);
+			state = Arrays.copyOf(state,capacity);
+			embarkingStart = Arrays.copyOf(embarkingStart,capacity);
+			disembarkingStart = Arrays.copyOf(disembarkingStart,capacity);
+			transitStart = Arrays.copyOf(transitStart,capacity);
+			transitEnd = Arrays.copyOf(transitEnd,capacity);
+			start = Arrays.copyOf(start,capacity);
+			destination = Arrays.copyOf(destination,capacity);
+			positionTicks = Arrays.copyOf(positionTicks,capacity);
+			chargeTicks = Arrays.copyOf(chargeTicks,capacity);
+			if(!isDetached()){
+				legStart = Arrays.copyOf(legStart,capacity);
+				legCharge = Arrays.copyOf(legCharge,capacity);
+				legLatitude = Arrays.copyOf(legLatitude,capacity);
+				legLongitude = Arrays.copyOf(legLongitude,capacity);
+				legHeight = Arrays.copyOf(legHeight,capacity);
+				legDestination = Arrays.copyOf(legDestination,capacity);
+				legTargetHeight = Arrays.copyOf(legTargetHeight,capacity);
+				legFraction = Arrays.copyOf(legFraction,capacity);
+				legArrival = Arrays.copyOf(legArrival,capacity);
+				legEmpty = Arrays.copyOf(legEmpty,capacity);
+				rechargeStart = Arrays.copyOf(rechargeStart,capacity);
+				rechargeCharge = Arrays.copyOf(rechargeCharge,capacity);
+				rechargePerTick = Arrays.copyOf(rechargePerTick,capacity);
+			}
+		}
+		state[size] = NO_STATE;
+		stateCounts[NO_STATE + 1]++;
+		start[size] = -1;
+		destination[size] = -1;
+		positionTicks[size] = UP_TO_DATE;
+		chargeTicks[size] = UP_TO_DATE;
+		if(!isDetached()){
+			legDestination[size] = NO_LEG;
+			rechargeStart[size] = NOT_CHARGING;
+		}
+		return size++;
+	}
+
+	DroneState getState(int slot){
+		if(state[slot] < 0){
+			return null;
+		}
+		return STATES[state[slot]];
+	}
+
+	void setState(int slot,DroneState droneState){
+		stateCounts[state[slot] + 1]--;
+		state[slot] = (droneState == null) ? NO_STATE : (byte) droneState.ordinal();
+		stateCounts[state[slot] + 1]++;
+	}
+
+	/**
+	 * @return how many drones are in a state, null for the ones that haven't been given one
+	 */
+	int count(DroneState droneState){
+		return stateCounts[(droneState == null) ? 0 : droneState.ordinal() + 1];
+	}
+
+	/**
+	 * Fill in the position of a drone part way along its leg
+	 * @return true if the position had to be worked out
+	 */
+	boolean updatePosition(int slot){
+		if(positionTicks[slot] == UP_TO_DATE){
+			return false;
+		}
+		double percentage = Math.min(1.0,positionTicks[slot]*legFraction[slot]);
+		int target = legDestination[slot];
+		latitude[slot] = (placeLatitude[target]-legLatitude[slot])*percentage+legLatitude[slot];
+		longitude[slot] = (placeLongitude[target]-legLongitude[slot])*percentage+legLongitude[slot];
+		height[slot] = (legTargetHeight[slot]-legHeight[slot])*percentage+legHeight[slot];
+		positionTicks[slot] = UP_TO_DATE;
+		return true;
+	}
+	
+	/**
+	 * Work out where a drone is the same way updatePosition does, without writing anything back, so the drone's
+	 * position can be read from other threads
+	 * @return a new position
+	 */
+	Position positionOf(int slot){
+		long ticks = positionTicks[slot];
+		if(ticks == UP_TO_DATE){
+			return new Position(latitude[slot],longitude[slot],height[slot]);
+		}
+		double percentage = Math.min(1.0,ticks*legFraction[slot]);
+		int target = legDestination[slot];
+		return new Position((placeLatitude[target]-legLatitude[slot])*percentage+legLatitude[slot],
+				(placeLongitude[target]-legLongitude[slot])*percentage+legLongitude[slot],
+				(legTargetHeight[slot]-legHeight[slot])*percentage+legHeight[slot]);
+	}
+
+	/**
+	 * Fill in the charge of a drone part way through recharging 
+	 */
+	void updateCharge(int slot){
+		if(chargeTicks[slot] == UP_TO_DATE){
+			return;
+		}
+		charge[slot] = rechargeCharge[slot] + chargeTicks[slot]*rechargePerTick[slot];
+		chargeTicks[slot] = UP_TO_DATE;
+	}
+
+	Place getPlace(int index){
+		if(index < 0){
+			return null;
+		}
+		return places[index];
+	}
+
+	/**
+	 * @return where a place is in the table, adding it if it isn't there yet.  -1 for null.
+	 * A table of a few places, e.g., a copy's start and destination, is searched rather than hashed.
+	 */
+	int indexOf(Place place){
+		if(place == null){
+			return -1;
+		}
+		if(placeIndex == null){
+			for(int i = 0; i < placeCount; i++){
+				if(places[i] == place){
+					return i;
+				}
+			}
+			if(placeCount == SEARCHED_PLACES){
+				placeIndex = new IdentityHashMap<Place,Integer>();
+				for(int i = 0; i < placeCount; i++){
+					placeIndex.put(places[i],i);
+				}
+			}
+		}
+		else{
+			Integer index = placeIndex.get(place);
+			if(index != null){
+				return index;
+			}
+		}
+		if(placeCount == places.length){
+			int capacity = places.length*2;
+			places = Arrays.copyOf(places,capacity);
+			placeLatitude = Arrays.copyOf(placeLatitude,capacity);
+			placeLongitude = Arrays.copyOf(placeLongitude,capacity);
+			placeHeight = Arrays.copyOf(placeHeight,capacity);
+		}
+		Position position = place.getPosition();
+		places[placeCount] = place;
+		placeLatitude[placeCount] = position.getLatitude();
+		placeLongitude[placeCount] = position.getLongitude();
+		placeHeight[placeCount] = position.getHeight();
+		if(placeIndex != null){
+			placeIndex.put(place,placeCount);
+		}
+		return placeCount++;
+	}
+
+}
@@ -2,6 +2,11 @@ package simulator;
 
 import static org.junit.Assert.*;
 
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.TreeSet;
 
 import org.junit.After;
@@ -11,6 +16,8 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import reference.MyDroneController;
+import simulator.enums.DroneState;
+import simulator.enums.PersonState;
 
 public class DroneTest {
 
@@ -55,19 +62,147 @@ public class DroneTest {
 		
 		assertTrue(d1.equals(d2));
 		assertTrue(d1.hashCode() == d2.hashCode());
+		assertTrue(d1.deepEquals(d2));
 		
 		/* Make sure the manifest is accounted for */
 		TreeSet<String> treeSet = new TreeSet<String>();
 		treeSet.add(name);
 		d2.setManifest(treeSet);
-		assertTrue(!d1.equals(d2));
-		assertTrue(d1.hashCode() != d2.hashCode());
+		assertTrue(!d1.deepEquals(d2));
+		assertTrue(d1.equals(d2));
+		assertTrue(d1.hashCode() == d2.hashCode());
 		
 		treeSet = new TreeSet<String>();
 		treeSet.add(name);
 		d1.setManifest(treeSet);
-		assertTrue(d1.equals(d2));
-		assertTrue(d1.hashCode() == d2.hashCode());
+		assertTrue(d1.deepEquals(d2));
+	}
+	
+	@Test
+	public void testIdentity() {
+		Place start = new Place("Timbuktu", new Position(10.0,20.0,0.0));
+		Place destination = new Place("Timbuk3", new Position(15.0,25.0,0.0));
+		
+		Drone d1 = new Drone(new MyDroneController(),start,destination,1);
+		Drone d2 = new Drone(new MyDroneController(),start,destination,1);
+		Set<Drone> hashed = new HashSet<Drone>();
+		hashed.add(d1);
+		Set<Drone> sorted = new TreeSet<Drone>();
+		sorted.add(d1);
+		sorted.add(d2);
+		int hash = d1.hashCode();
+		
+		//Which drone it is doesn't change as it flies
+		d1.setState(DroneState.IN_TRANSIT);
+		d1.setCharge(0.5);
+		d1.setLocation(12.0,22.0,100.0);
+		d1.getPassengers().add(new Person("01","Doug","Timbuktu",start.getPosition(),"Timbuk3",PersonState.IN_DRONE));
+		assertEquals(hash,d1.hashCode());
+		assertTrue(hashed.contains(d1));
+		assertTrue(sorted.contains(d1));
+		assertFalse(new Drone(d2).deepEquals(d1));
+		
+		//Drones are in the order of their ids
+		Drone first = (d1.getId().compareTo(d2.getId()) < 0) ? d1 : d2;
+		Drone second = (first == d1) ? d2 : d1;
+		assertNotEquals(d1,d2);
+		assertTrue(first.compareTo(second) < 0);
+		assertTrue(second.compareTo(first) > 0);
+		assertEquals(first,sorted.iterator().next());
+		assertTrue(d1.compareTo(null) > 0);
+		assertFalse(d1.equals(null));
+		
+		//A copy made elsewhere from the id is the same drone
+		Drone copy = new Drone(new MyDroneController(),d2.getId(),d2.getName(),destination,start,1);
+		assertEquals(d2,copy);
+		assertEquals(d2.getId(),copy.getId());
+		assertEquals(0,d2.compareTo(copy));
+	}
+	
+	@Test
+	public void testMoveToStore() {
+		Place start = new Place("Timbuktu", new Position(10.0,20.0,0.0));
+		Place destination = new Place("Timbuk3", new Position(15.0,25.0,0.0));
+		
+		Drone d1 = new Drone(new MyDroneController(),start,destination,1);
+		d1.setState(DroneState.IN_TRANSIT);
+		d1.setCharge(0.5);
+		d1.setTransitStart(1000);
+		d1.setLocation(12.0,22.0,100.0);
+		Drone before = new Drone(d1);
+		
+		DroneStore store = new DroneStore(1);
+		Drone d2 = new Drone(new MyDroneController(),destination,start,1);
+		d2.moveTo(store);
+		d1.moveTo(store);
+		
+		assertEquals(2,store.size());
+		assertEquals(1,d1.slot);
+		assertTrue(before.getStore().isDetached());
+		assertFalse(d1.getStore().isDetached());
+		assertTrue(before.deepEquals(d1));
+		assertTrue(d1.getStart() == start);
+		assertTrue(d1.getDestination() == destination);
+		
+		/* The store and the drone see the same state */
+		d1.setCharge(0.25);
+		assertEquals(0.25,store.charge[d1.slot],0.0);
+		d1.setHeight(50.0);
+		assertEquals(50.0,store.height[d1.slot],0.0);
+		assertEquals(50.0,d1.getPosition().getHeight(),0.0);
+		assertEquals(store.destination[d2.slot],store.start[d1.slot]);
+		assertEquals(DroneState.IN_TRANSIT,d1.getState());
+		assertEquals(null,d2.getState());
+	}
+	
+	@Test
+	public void testManifest() {
+		Place start = new Place("Timbuktu", new Position(10.0,20.0,0.0));
+		Place destination = new Place("Timbuk3", new Position(15.0,25.0,0.0));
+		Drone d1 = new Drone(new MyDroneController(),start,destination,1);
+		PlaceNames names = new PlaceNames(new Place[]{start,destination});
+		d1.setManifest(new Manifest(names));
+		
+		//Controllers still see a set of names
+		Set<String> manifest = d1.getManifest();
+		assertTrue(manifest.isEmpty());
+		assertTrue(manifest.add("Timbuk3"));
+		assertFalse(manifest.add("Timbuk3"));
+		assertTrue(manifest.add("Timbuktu"));
+		assertEquals(2,manifest.size());
+		assertTrue(manifest.contains("Timbuk3"));
+		assertFalse(manifest.contains("Nowhere in particular"));
+		assertFalse(manifest.contains(null));
+		assertEquals(new TreeSet<String>(Arrays.asList("Timbuktu","Timbuk3")),manifest);
+		assertEquals(manifest,new TreeSet<String>(Arrays.asList("Timbuktu","Timbuk3")));
+		assertEquals(new TreeSet<String>(Arrays.asList("Timbuktu","Timbuk3")).hashCode(),manifest.hashCode());
+		assertEquals(new HashSet<String>(Arrays.asList("Timbuktu","Timbuk3")),new HashSet<String>(manifest));
+		
+		//And the simulator sees bits by place index
+		Manifest bits = d1.peekManifest();
+		assertTrue(bits.contains(names.indexOf("Timbuk3")));
+		BitSet justStart = new BitSet();
+		justStart.set(names.indexOf("Timbuktu"));
+		assertTrue(bits.intersects(justStart));
+		assertTrue(manifest.remove("Timbuktu"));
+		assertFalse(manifest.remove("Timbuktu"));
+		assertFalse(bits.intersects(justStart));
+		assertEquals(Collections.singleton("Timbuk3"),manifest);
+		
+		//A name that isn't a place is kept as it is, without being given an index
+		assertTrue(manifest.add("Nowhere in particular"));
+		assertTrue(manifest.contains("Nowhere in particular"));
+		assertEquals(-1,names.indexOf("Nowhere in particular"));
+		assertEquals(new TreeSet<String>(Arrays.asList("Timbuk3","Nowhere in particular")),manifest);
+		assertEquals(names.indexOf("Timbuk3"),bits.nextPlace(0));
+		assertEquals(-1,bits.nextPlace(names.indexOf("Timbuk3") + 1));
+		assertTrue(manifest.remove("Nowhere in particular"));
+		
+		//Copies don't share bits
+		Drone d2 = new Drone(d1);
+		assertEquals(d1.getManifest(),d2.getManifest());
+		d2.getManifest().clear();
+		assertEquals(1,d1.getManifest().size());
 	}
 
 }
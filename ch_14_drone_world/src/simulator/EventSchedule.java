@@ -0,0 +1,139 @@
+package simulator;
+
+/**
+ * A priority queue of the next round in which each drone has something to do.
+ * Drones are identified by their slot in the simulator so that rescheduling one doesn't allocate anything.
+ */
+class EventSchedule {
+
+	//Per slot: the next round the drone needs to be visited and the last round it was visited
+	private long[] eventTick;
+	private long[] lastAdvancedTick;
+
+	//A binary min heap of slots ordered by eventTick, and where each slot is in the heap
+	private int[] heap;
+	private int[] heapIndex;
+	//Heap indexes still to look at while collecting the drones that are due
+	private int[] pending;
+
+	EventSchedule(int size,long startTick){
+		eventTick = new long[size];
+		lastAdvancedTick = new long[size];
+		heap = new int[size];
+		heapIndex = new int[size];
+		pending = new int[size];
+		for(int i = 0; i < size; i++){
+			//Everyone is visited on the first round
+			eventTick[i] = Long.MIN_VALUE;
+			lastAdvancedTick[i] = startTick;
+			heap[i] = i;
+			heapIndex[i] = i;
+		}
+	}
+
+	/**
+	 * @return the earliest round that any drone needs to be visited, Long.MAX_VALUE if none ever do
+	 */
+	long peekTick(){
+		if(heap.length == 0){
+			return Long.MAX_VALUE;
+		}
+		return eventTick[heap[0]];
+	}
+
+	boolean isDue(int slot,long tick){
+		return eventTick[slot] <= tick;
+	}
+
+	/**
+	 * Collect the drones due by a round without taking them off the queue.  Only the due part of the heap and the
+	 * children just past it are looked at, so this is as quick as there are drones due.
+	 * @param into where to put their slots, in no particular order
+	 * @return how many there are
+	 */
+	int due(long tick,int[] into){
+		if((heap.length == 0) || (eventTick[heap[0]] > tick)){
+			return 0;
+		}
+		int count = 0;
+		int top = 0;
+		pending[top++] = 0;
+		while(top > 0){
+			int index = pending[--top];
+			into[count++] = heap[index];
+			int child = 2*index + 1;
+			if((child < heap.length) && (eventTick[heap[child]] <= tick)){
+				pending[top++] = child;
+			}
+			child++;
+			if((child < heap.length) && (eventTick[heap[child]] <= tick)){
+				pending[top++] = child;
+			}
+		}
+		return count;
+	}
+
+	void schedule(int slot,long tick){
+		long old = eventTick[slot];
+		eventTick[slot] = tick;
+		if(tick < old){
+			siftUp(heapIndex[slot]);
+		}
+		else if(tick > old){
+			siftDown(heapIndex[slot]);
+		}
+	}
+
+	/**
+	 * Bring a drone's next visit forward, never push it back
+	 */
+	void wake(int slot,long tick){
+		if(tick < eventTick[slot]){
+			schedule(slot,tick);
+		}
+	}
+
+	long getLastAdvancedTick(int slot){
+		return lastAdvancedTick[slot];
+	}
+
+	void setLastAdvancedTick(int slot,long tick){
+		lastAdvancedTick[slot] = tick;
+	}
+
+	private void siftUp(int index){
+		int slot = heap[index];
+		while(index > 0){
+			int parent = (index - 1)/2;
+			if(eventTick[heap[parent]] <= eventTick[slot]){
+				break;
+			}
+			place(index,heap[parent]);
+			index = parent;
+		}
+		place(index,slot);
+	}
+
+	private void siftDown(int index){
+		int slot = heap[index];
+		int half = heap.length/2;
+		while(index < half){
+			int child = 2*index + 1;
+			if((child + 1 < heap.length) && (eventTick[heap[child+1]] < eventTick[heap[child]])){
+				child++;
+			}
+			if(eventTick[slot] <= eventTick[heap[child]]){
+				break;
+			}
+			place(index,heap[child]);
+			index = child;
+		}
+		place(index,slot);
+	}
+
+	private void place(int index,int slot){
+		heap[index] = slot;
+		heapIndex[slot] = index;
+	}
+
+}
@@ -0,0 +1,90 @@
+package simulator;
+
+import java.util.Set;
+
+import simulator.enums.DroneEvent;
+import simulator.interfaces.BatchDroneController;
+import simulator.interfaces.DroneController;
+
+/**
+ * Runs an ordinary DroneController as a BatchDroneController: each round's batch is played back to it one call at
+ * a time, in order.  Its calls to routeDrone and setDroneManifest still go straight to the simulator.
+ */
+public class LegacyControllerAdapter implements BatchDroneController {
+	
+	private final DroneController controller;
+	
+	public LegacyControllerAdapter(DroneController controller){
+		if(controller == null){
+			throw new IllegalArgumentException("Can't adapt a null controller");
+		}
+		this.controller = controller;
+	}
+	
+	public DroneController getController(){
+		return controller;
+	}
+
+	@Override
+	public void setSimulator(Simulator simulator) {
+		controller.setSimulator(simulator);
+	}
+	
+	@Override
+	public Set<DroneEvent> getSubscribedEvents(){
+		return controller.getSubscribedEvents();
+	}
+	
+	@Override
+	public ProgressPolicy getTransitProgressPolicy(){
+		return controller.getTransitProgressPolicy();
+	}
+
+	@Override
+	public String getNextDroneName() {
+		return controller.getNextDroneName();
+	}
+
+	@Override
+	public String getCompanyName() {
+		return controller.getCompanyName();
+	}
+
+	@Override
+	public void droneEvents(DroneEventBatch events, DroneDecisions decisions) {
+		for(int i = 0; i < events.size(); i++){
+			dispatch(controller,events.getEvent(i),events.peekDrone(i),events.getValue(i));
+		}
+	}
+	
+	/**
+	 * Make the call back for one event
+	 * @param value the progress or charge for TRANSITING and RECHARGING
+	 */
+	static void dispatch(DroneController controller,DroneEvent event,Drone drone,double value){
+		switch (event){
+			case EMBARKING_START: controller.droneEmbarkingStart(drone); break;
+			case EMBARKING_A_GROUP_START: controller.droneEmbarkingAGroupStart(drone); break;
+			case EMBARKING_A_GROUP_END: controller.droneEmbarkingAGroupEnd(drone); break;
+			case EMBARKING_END: controller.droneEmbarkingEnd(drone); break;
+			case ASCENDING_START: controller.droneAscendingStart(drone); break;
+			case ASCENDING_END: controller.droneAscendingEnd(drone); break;
+			case TRANSITING_START: controller.droneTransitingStart(drone); break;
+			case TRANSITING: controller.droneTransiting(drone,value); break;
+			case TRANSITING_END: controller.droneTransitingEnd(drone); break;
+			case EXPLODING: controller.droneExploding(drone); break;
+			case HAS_DIED: controller.droneHasDied(drone); break;
+			case DESCENDING_START: controller.droneDescendingStart(drone); break;
+			case DESCENDING_END: controller.droneDescendingEnd(drone); break;
+			case DISEMBARKING_START: controller.droneDisembarkingStart(drone); break;
+			case DISEMBARKING_GROUP_START: controller.droneDisembarkingGroupStart(drone); break;
+			case DISEMBARKING_GROUP_END: controller.droneDisembarkingGroupEnd(drone); break;
+			case DISEMBARKING_END: controller.droneDisembarkingEnd(drone); break;
+			case RECHARGING_START: controller.droneRechargingStart(drone); break;
+			case RECHARGING: controller.droneRecharging(drone,value); break;
+			case DONE_RECHARGING: controller.droneDoneRecharging(drone); break;
+			case IDLING: controller.droneIdling(drone); break;
+		}
+	}
+
+}
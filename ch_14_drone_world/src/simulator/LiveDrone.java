@@ -0,0 +1,191 @@
+package simulator;
+
+import java.util.Collections;
+import java.util.Set;
+
+import simulator.enums.DroneState;
+import simulator.interfaces.DroneController;
+
+/**
+ * The drone controllers are handed in call backs.  It reads the simulator's drone directly instead of copying the
+ * drone, its places and everyone waiting at them on every call back, and nothing about it can be changed: its sets
+ * are read-only and its places are the read-only copies from Place.view().  There is one per simulated drone.
+ */
+class LiveDrone extends Drone {
+
+	private final Drone drone;
+
+	//Read-only wrappers, remade only when the drone is given a different set
+	private Set<String> manifest;
+	private Set<String> readOnlyManifest;
+	private Set<Person> embarkers;
+	private Set<Person> readOnlyEmbarkers;
+	private Set<Person> disembarkers;
+	private Set<Person> readOnlyDisembarkers;
+	private Set<Person> passengers;
+	private Set<Person> readOnlyPassengers;
+
+	LiveDrone(Drone drone){
+		super(drone.getId());
+		this.drone = drone;
+	}
+
+	@Override
+	Drone source(){
+		return drone;
+	}
+
+	@Override
+	public DroneController getController() {
+		return drone.getController();
+	}
+
+	@Override
+	public String getName() {
+		return drone.getName();
+	}
+
+	@Override
+	public String getCompanyName() {
+		return drone.getCompanyName();
+	}
+
+	@Override
+	public Place getStart() {
+		Place start = drone.getStart();
+		return (start == null) ? null : start.view();
+	}
+
+	@Override
+	public Position getPosition() {
+		return drone.getPosition();
+	}
+
+	@Override
+	public Place getDestination() {
+		Place destination = drone.getDestination();
+		return (destination == null) ? null : destination.view();
+	}
+
+	@Override
+	public Set<String> getManifest() {
+		if(drone.getManifest() != manifest){
+			manifest = drone.getManifest();
+			readOnlyManifest = (manifest == null) ? null : Collections.unmodifiableSet(manifest);
+		}
+		return readOnlyManifest;
+	}
+
+	@Override
+	public DroneState getState() {
+		return drone.getState();
+	}
+
+	@Override
+	public long getEmbarkingStart() {
+		return drone.getEmbarkingStart();
+	}
+
+	@Override
+	public int getEmbarkingDuration() {
+		return drone.getEmbarkingDuration();
+	}
+
+	@Override
+	public int getEmbarkingCapacity() {
+		return drone.getEmbarkingCapacity();
+	}
+
+	@Override
+	public Set<Person> getEmbarkers() {
+		if(drone.getEmbarkers() != embarkers){
+			embarkers = drone.getEmbarkers();
+			readOnlyEmbarkers = (embarkers == null) ? null : Collections.unmodifiableSet(embarkers);
+		}
+		return readOnlyEmbarkers;
+	}
+
+	@Override
+	public long getDisembarkingStart() {
+		return drone.getDisembarkingStart();
+	}
+
+	@Override
+	public int getDisembarkingDuration() {
+		return drone.getDisembarkingDuration();
+	}
+
+	@Override
+	public Set<Person> getDisembarkers() {
+		if(drone.getDisembarkers() != disembarkers){
+			disembarkers = drone.getDisembarkers();
+			readOnlyDisembarkers = (disembarkers == null) ? null : Collections.unmodifiableSet(disembarkers);
+		}
+		return readOnlyDisembarkers;
+	}
+
+	@Override
+	public long getAscensionTime() {
+		return drone.getAscensionTime();
+	}
+
+	@Override
+	public long getDescensionTime() {
+		return drone.getDescensionTime();
+	}
+
+	@Override
+	public long getTransitStart() {
+		return drone.getTransitStart();
+	}
+
+	@Override
+	public long getTransitEnd() {
+		return drone.getTransitEnd();
+	}
+
+	@Override
+	public double getCharge() {
+		return drone.getCharge();
+	}
+
+	@Override
+	public double getRechargeRate() {
+		return drone.getRechargeRate();
+	}
+
+	@Override
+	public double getDischargeRate() {
+		return drone.getDischargeRate();
+	}
+
+	@Override
+	public int getCapacity() {
+		return drone.getCapacity();
+	}
+
+	@Override
+	public Set<Person> getPassengers() {
+		if(drone.getPassengers() != passengers){
+			passengers = drone.getPassengers();
+			readOnlyPassengers = (passengers == null) ? null : Collections.unmodifiableSet(passengers);
+		}
+		return readOnlyPassengers;
+	}
+
+	@Override
+	public double getSpeed() {
+		return drone.getSpeed();
+	}
+
+	@Override
+	public Drone snapshot() {
+		return drone.snapshot();
+	}
+
+	@Override
+	Drone view() {
+		return this;
+	}
+
+}
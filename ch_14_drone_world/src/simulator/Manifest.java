@@ -0,0 +1,233 @@
+package simulator;
+
+import java.util.AbstractSet;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * A drone's manifest, kept as a bit for each of the simulator's places by the place's index.  Controllers see it as
+ * the set of place names it has always been, while the simulator checks and combines manifests a word at a time.
+ * Names that aren't one of the places are kept as they are and never board anyone.
+ */
+final class Manifest extends AbstractSet<String> {
+
+	private final PlaceNames names;
+	private final BitSet places;
+	//The names that aren't places, null until there is one
+	private Set<String> others;
+	//Whether changes are refused, for the manifests of the drone copies the simulator shares between controllers
+	private boolean readOnly;
+
+	Manifest(PlaceNames names){
+		this.names = names;
+		places = new BitSet();
+	}
+
+	/**
+	 * A set of place names as a manifest over these places, a copy of the bits if it is already one over them
+	 */
+	Manifest(PlaceNames names,Collection<String> manifest){
+		this.names = names;
+		if((manifest instanceof Manifest) && (((Manifest) manifest).names == names)){
+			Manifest other = (Manifest) manifest;
+			places = (BitSet) other.places.clone();
+			if(other.others != null){
+				others = new TreeSet<String>(other.others);
+			}
+		}
+		else{
+			places = new BitSet();
+			addAll(manifest);
+		}
+	}
+
+	/**
+	 * A copy over the same places
+	 */
+	Manifest(Manifest manifest){
+		this(manifest.names,manifest);
+	}
+
+	/**
+	 * @return the places this manifest's indexes are for
+	 */
+	PlaceNames names(){
+		return names;
+	}
+
+	/**
+	 * Refuse any change from now on
+	 */
+	void makeReadOnly(){
+		readOnly = true;
+	}
+
+	private void checkWritable(){
+		if(readOnly){
+			throw new UnsupportedOperationException("The manifest of a shared copy of a drone can't be changed");
+		}
+	}
+
+	/**
+	 * @return true if the place with this index is on the manifest
+	 */
+	boolean contains(int place){
+		return places.get(place);
+	}
+
+	void add(int place){
+		places.set(place);
+	}
+
+	/**
+	 * @return true if any place on this manifest has its bit set in places
+	 */
+	boolean intersects(BitSet places){
+		return this.places.intersects(places);
+	}
+
+	/**
+	 * @return the index of the first place on the manifest at or after from, -1 if there isn't one
+	 */
+	int nextPlace(int from){
+		return places.nextSetBit(from);
+	}
+
+	/**
+	 * Drop the names that aren't places
+	 */
+	void retainPlaces(){
+		others = null;
+	}
+
+	@Override
+	public int size() {
+		return places.cardinality() + ((others == null) ? 0 : others.size());
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return places.isEmpty() && ((others == null) || others.isEmpty());
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		if(!(o instanceof String)){
+			return false;
+		}
+		int place = names.indexOf((String) o);
+		if(place < 0){
+			return (others != null) && others.contains(o);
+		}
+		return places.get(place);
+	}
+
+	@Override
+	public boolean add(String name) {
+		if(name == null){
+			throw new NullPointerException("A manifest can't have a null place");
+		}
+		checkWritable();
+		int place = names.indexOf(name);
+		if(place < 0){
+			if(others == null){
+				others = new TreeSet<String>();
+			}
+			return others.add(name);
+		}
+		if(places.get(place)){
+			return false;
+		}
+		places.set(place);
+		return true;
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		if(!contains(o)){
+			return false;
+		}
+		checkWritable();
+		int place = names.indexOf((String) o);
+		if(place < 0){
+			others.remove(o);
+		}
+		else{
+			places.clear(place);
+		}
+		return true;
+	}
+
+	@Override
+	public void clear() {
+		checkWritable();
+		places.clear();
+		others = null;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if((o instanceof Manifest) && (((Manifest) o).names == names)){
+			Manifest other = (Manifest) o;
+			return places.equals(other.places) && otherNames().equals(other.otherNames());
+		}
+		return super.equals(o);
+	}
+
+	@Override
+	public int hashCode() {
+		return super.hashCode();
+	}
+
+	private Set<String> otherNames(){
+		return (others == null) ? Collections.<String>emptySet() : others;
+	}
+
+	@Override
+	public Iterator<String> iterator() {
+		final Iterator<String> rest = otherNames().iterator();
+		return new Iterator<String>(){
+
+			private int next = places.nextSetBit(0);
+			private int last = -1;
+			//Whether the last name came from the names that aren't places
+			private boolean lastWasOther;
+
+			@Override
+			public boolean hasNext() {
+				return (next >= 0) || rest.hasNext();
+			}
+
+			@Override
+			public String next() {
+				if(next < 0){
+					lastWasOther = true;
+					return rest.next();
+				}
+				last = next;
+				next = places.nextSetBit(next + 1);
+				return names.nameOf(last);
+			}
+
+			@Override
+			public void remove() {
+				checkWritable();
+				if(lastWasOther){
+					rest.remove();
+					lastWasOther = false;
+					return;
+				}
+				if(last < 0){
+					throw new IllegalStateException();
+				}
+				places.clear(last);
+				last = -1;
+			}
+		};
+	}
+
+}
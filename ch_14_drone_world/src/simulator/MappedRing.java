@@ -0,0 +1,195 @@
+package simulator;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A single producer, single consumer ring of length prefixed frames in a piece of shared memory, normally a
+ * mapped file that another process maps too.  The first bytes hold how many bytes have ever been written and
+ * read, each on its own cache line, the rest is the ring.  A frame is only counted as written once all of it is
+ * there, so the reader never sees half a frame.  Waiting spins, then yields, then sleeps briefly.
+ * <p>
+ * The counters are plain 8 byte reads and writes of the buffer, which are single accesses for the aligned offsets
+ * they are at, and the ordering around them comes from a volatile field.  Moving a counter writes the field and
+ * then the counter, reading one reads the counter and then the field.  The Java memory model says nothing about
+ * memory that another process shares, so the argument is about how JVMs carry out volatile accesses, as the
+ * JSR-133 cookbook lays out: a volatile write has a barrier before it that keeps earlier reads and writes before it,
+ * and a full barrier after it that keeps later writes after it, and a volatile read has a barrier after it that
+ * keeps later reads and writes after it and everything before it.  So the writer's bytes are in memory before the
+ * written counter moves, and the reader's loads of those bytes can't be done before it has loaded the counter.
+ * The same goes the other way for the read counter, so the writer never writes over bytes that haven't been read.
+ */
+final class MappedRing {
+
+	private static final int WRITTEN = 0;
+	private static final int READ = 64;
+	static final int HEADER = 128;
+	//How many times to spin and then how long to yield waiting for the other side before sleeping between
+	//looks.  With one processor spinning only keeps the other side from running.
+	private static final int SPINS = (Runtime.getRuntime().availableProcessors() > 1) ? 20000 : 0;
+	private static final long YIELD_NANOS = 1000000;
+	private static final long SLEEP_NANOS = 50000;
+
+	private final ByteBuffer counters;
+	//Only here for the barriers around reading and moving the counters
+	private volatile long fence;
+	private final ByteBuffer data;
+	private final int capacity;
+	private final int mask;
+	private final ByteBuffer length = ByteBuffer.allocate(4).order(ByteOrder.nativeOrder());
+
+	/**
+	 * @param region HEADER bytes followed by the ring, whose size has to be a power of two
+	 */
+	MappedRing(ByteBuffer region){
+		int ring = region.capacity() - HEADER;
+		if((ring <= 0) || (Integer.bitCount(ring) != 1)){
+			throw new IllegalArgumentException("The ring has to be a power of two bytes:"+ring);
+		}
+		ByteBuffer all = region.duplicate();
+		all.position(0).limit(HEADER);
+		counters = all.slice().order(ByteOrder.nativeOrder());
+		all.limit(region.capacity()).position(HEADER);
+		data = all.slice();
+		capacity = ring;
+		mask = ring - 1;
+	}
+
+	/**
+	 * @return how many bytes a region for a ring this big needs
+	 */
+	static int size(int capacity){
+		return HEADER + capacity;
+	}
+
+	int capacity(){
+		return capacity;
+	}
+
+	/**
+	 * Add the bytes between the frame's position and limit as one frame, waiting for room if the ring is full
+	 * @param timeoutNanos how long to wait for room, less than 0 to wait as long as it takes
+	 * @return false if there wasn't room in time
+	 */
+	boolean write(ByteBuffer frame,long timeoutNanos){
+		long needed = 4 + frame.remaining();
+		if(needed > capacity){
+			throw new IllegalArgumentException("A "+frame.remaining()+" byte frame doesn't fit in a "+capacity+" byte ring");
+		}
+		long written = counter(WRITTEN);
+		long began = System.nanoTime();
+		for(int waits = 0; written + needed - counter(READ) > capacity; waits++){
+			if(!idle(waits,began,timeoutNanos)){
+				return false;
+			}
+		}
+		length.clear();
+		length.putInt(0,frame.remaining());
+		copyIn(written,length);
+		copyIn(written + 4,frame);
+		moveCounter(WRITTEN,written + needed);
+		return true;
+	}
+
+	/**
+	 * Take the next frame, waiting for one if there isn't one yet
+	 * @param into cleared and filled with the frame, ready to be read
+	 * @param timeoutNanos how long to wait for a frame, less than 0 to wait as long as it takes
+	 * @return the frame's length, -1 if none came in time
+	 */
+	int read(ByteBuffer into,long timeoutNanos){
+		long read = counter(READ);
+		long began = System.nanoTime();
+		for(int waits = 0; counter(WRITTEN) - read < 4; waits++){
+			if(!idle(waits,began,timeoutNanos)){
+				return -1;
+			}
+		}
+		length.clear();
+		copyOut(read,length,4);
+		int size = length.getInt(0);
+		if((size < 0) || (size > into.capacity()) || (size + 4 > capacity)){
+			throw new IllegalStateException("Bad frame length in the ring:"+size);
+		}
+		into.clear();
+		copyOut(read + 4,into,size);
+		into.flip();
+		moveCounter(READ,read + 4 + size);
+		return size;
+	}
+
+	/**
+	 * Read a counter before anything that comes after, so the bytes it counts are there to be read
+	 */
+	private long counter(int offset){
+		long value = counters.getLong(offset);
+		acquire();
+		return value;
+	}
+
+	private long acquire(){
+		return fence;
+	}
+
+	/**
+	 * Move a counter on after everything that came before, so the other side only sees it once the bytes it
+	 * counts have been written or read
+	 */
+	private void moveCounter(int offset,long value){
+		fence = value;
+		counters.putLong(offset,value);
+	}
+
+	/**
+	 * @return false once the wait has gone on longer than the timeout
+	 */
+	private boolean idle(int waits,long began,long timeoutNanos){
+		if(waits < SPINS){
+			return true;
+		}
+		long waited = System.nanoTime() - began;
+		if((timeoutNanos >= 0) && (waited > timeoutNanos)){
+			return false;
+		}
+		if(waited < YIELD_NANOS){
+			Thread.yield();
+		}
+		else{
+			LockSupport.parkNanos(SLEEP_NANOS);
+		}
+		return true;
+	}
+
+	/**
+	 * Copy everything left in from into the ring at the given count, wrapping around the end
+	 */
+	private void copyIn(long at,ByteBuffer from){
+		int offset = (int) (at & mask);
+		int first = Math.min(from.remaining(),capacity - offset);
+		int limit = from.limit();
+		data.clear();
+		data.position(offset);
+		from.limit(from.position() + first);
+		data.put(from);
+		from.limit(limit);
+		if(from.hasRemaining()){
+			data.clear();
+			data.put(from);
+		}
+	}
+
+	private void copyOut(long at,ByteBuffer into,int count){
+		int offset = (int) (at & mask);
+		int first = Math.min(count,capacity - offset);
+		data.clear();
+		data.position(offset).limit(offset + first);
+		into.put(data);
+		if(first < count){
+			data.clear();
+			data.limit(count - first);
+			into.put(data);
+		}
+	}
+
+}
@@ -0,0 +1,87 @@
+package simulator;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class MappedRingTest {
+	
+	private static ByteBuffer frame(int sequence,int length){
+		ByteBuffer frame = ByteBuffer.allocate(length);
+		for(int i = 0; i < length; i++){
+			frame.put((byte) (sequence + i));
+		}
+		frame.flip();
+		return frame;
+	}
+	
+	private static void check(ByteBuffer frame,int sequence,int length){
+		assertEquals(length,frame.remaining());
+		for(int i = 0; i < length; i++){
+			assertEquals((byte) (sequence + i),frame.get());
+		}
+	}
+
+	@Test
+	public void testFramesWrapAround() {
+		MappedRing ring = new MappedRing(ByteBuffer.allocateDirect(MappedRing.size(64)));
+		ByteBuffer into = ByteBuffer.allocate(64);
+		//Lengths that don't divide the ring, so frames and their lengths get split at the end
+		for(int i = 0; i < 1000; i++){
+			int length = 1 + (i*7)%50;
+			assertTrue(ring.write(frame(i,length),0));
+			assertEquals(length,ring.read(into,0));
+			check(into,i,length);
+		}
+		assertEquals(-1,ring.read(into,0));
+	}
+	
+	@Test
+	public void testFullRingTimesOut() {
+		MappedRing ring = new MappedRing(ByteBuffer.allocateDirect(MappedRing.size(64)));
+		assertTrue(ring.write(frame(0,28),0));
+		assertTrue(ring.write(frame(1,28),0));
+		assertFalse(ring.write(frame(2,1),1000000));
+		
+		ByteBuffer into = ByteBuffer.allocate(64);
+		assertEquals(28,ring.read(into,0));
+		check(into,0,28);
+		assertTrue(ring.write(frame(2,1),0));
+		
+		try {
+			ring.write(frame(3,61),0);
+			fail("A frame bigger than the ring can't be written");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+	
+	@Test
+	public void testAcrossThreads() throws InterruptedException {
+		final MappedRing ring = new MappedRing(ByteBuffer.allocateDirect(MappedRing.size(256)));
+		final int frames = 100000;
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		Thread reader = new Thread(() -> {
+			try {
+				ByteBuffer into = ByteBuffer.allocate(256);
+				for(int i = 0; i < frames; i++){
+					int length = ring.read(into,5000000000L);
+					check(into,i,1 + i%40);
+					assertEquals(1 + i%40,length);
+				}
+			} catch (Throwable t) {
+				failure.set(t);
+			}
+		});
+		reader.start();
+		for(int i = 0; i < frames; i++){
+			assertTrue(ring.write(frame(i,1 + i%40),5000000000L));
+		}
+		reader.join(10000);
+		assertFalse(reader.isAlive());
+		assertNull(failure.get());
+	}
+
+}
@@ -8,9 +8,15 @@ import com.jme3.export.Savable;
 
 import simulator.enums.PersonState;
 
+/**
+ * Someone who wants a ride.  A person is identified by their id, which never changes, so people can be kept in
+ * hashed and sorted sets while their state and position change.  Use deepEquals to compare everything else.
+ */
 public class Person implements Comparable<Person>, Savable{
 	
-	String id;
+	final String id;
+	//The id's hash, worked out once
+	private final int hash;
 	String name;
 	//Name of place where person is starting
 	String start;
@@ -18,6 +24,8 @@ public class Person implements Comparable<Person>, Savable{
 	String destination;
 	//The current position of the Person that is used to render them
 	Position position;
+	//The drone they are riding in, they are wherever it is until they are put down somewhere
+	Drone carrier;
 	PersonState state;
 	//When the Person began and ended their trip
 	Long startTransitTime;
@@ -31,10 +39,6 @@ public class Person implements Comparable<Person>, Savable{
 		return id;
 	}
 
-	void setId(String id) {
-		this.id = id;
-	}
-	
 
 	public String getName() {
 		return name;
@@ -65,9 +69,20 @@ public class Person implements Comparable<Person>, Savable{
 
 	void setPosition(Position position){
 		this.position = position;
+		this.carrier = null;
+	}
+	
+	/**
+	 * Ride along in a drone, so the person's position is the drone's from now on
+	 */
+	void setCarrier(Drone drone){
+		this.carrier = drone;
 	}
 	
 	public Position getPosition(){
+		if(carrier != null){
+			return carrier.getPosition();
+		}
 		return new Position(position);
 	}
 	
@@ -108,6 +123,7 @@ public class Person implements Comparable<Person>, Savable{
 
 	public Person(String id,String name, String start,Position currentLocation,String destination,PersonState state) {
 		this.id = id;
+		this.hash = (id == null) ? 0 : id.hashCode();
 		this.name = name;
 		this.start = start ;
 		this.position = new Position(currentLocation);
@@ -119,7 +135,8 @@ public class Person implements Comparable<Person>, Savable{
 	}
 	
 	public Person(Person person){
-		this.setId(person.getId());
+		this.id = person.getId();
+		this.hash = person.hash;
 		this.setName(person.getName());
 		this.setStart(person.getStart());
 		this.setPosition(new Position(person.getPosition()));
@@ -134,29 +151,32 @@ public class Person implements Comparable<Person>, Savable{
 
 	@Override
 	public int hashCode() {
-		final int prime = 31;
-		int result = 1;
-		result = prime * result + ((deliveryCompany == null) ? 0 : deliveryCompany.hashCode());
-		result = prime * result + ((destination == null) ? 0 : destination.hashCode());
-		result = prime * result + ((endTransitTime == null) ? 0 : endTransitTime.hashCode());
-		result = prime * result + ((id == null) ? 0 : id.hashCode());
-		result = prime * result + ((name == null) ? 0 : name.hashCode());
-		result = prime * result + ((position == null) ? 0 : position.hashCode());
-		result = prime * result + ((start == null) ? 0 : start.hashCode());
-		result = prime * result + ((startTransitTime == null) ? 0 : startTransitTime.hashCode());
-		result = prime * result + ((state == null) ? 0 : state.hashCode());
-		return result;
+		return hash;
 	}
 
+	/**
+	 * People are the same person if they have the same id
+	 */
 	@Override
 	public boolean equals(Object obj) {
 		if (this == obj)
 			return true;
-		if (obj == null)
-			return false;
 		if (!(obj instanceof Person))
 			return false;
 		Person other = (Person) obj;
+		if (hash != other.hash)
+			return false;
+		return (id == null) ? (other.id == null) : id.equals(other.id);
+	}
+
+	/**
+	 * @return true if every field of the other person is the same as this one's, not just the id
+	 */
+	public boolean deepEquals(Person other) {
+		if (this == other)
+			return true;
+		if (other == null)
+			return false;
 		if (deliveryCompany == null) {
 			if (other.deliveryCompany != null)
 				return false;
@@ -182,10 +202,7 @@ public class Person implements Comparable<Person>, Savable{
 				return false;
 		} else if (!name.equals(other.name))
 			return false;
-		if (position == null) {
-			if (other.position != null)
-				return false;
-		} else if (!position.equals(other.position))
+		if (!getPosition().equals(other.getPosition()))
 			return false;
 		if (start == null) {
 			if (other.start != null)
@@ -202,65 +219,20 @@ public class Person implements Comparable<Person>, Savable{
 		return true;
 	}
 
+	/**
+	 * People are ordered by id, a person without one comes first
+	 */
 	@Override
 	public int compareTo(Person other) {
 		if (this == other)
 			return 0;
 		if (other == null)
-			return -11;
-		
-		if (name == null) {
-			if (other.name != null)
-				return -1;
-		} else if (!name.equals(other.name))
-			return name.compareTo(other.name);
-		
-		if (destination == null) {
-			if (other.destination != null)
-				return 1;
-		} else if (!destination.equals(other.destination))
-			return destination.compareTo(other.destination);
-		
-		if (id == null) {
-			if (other.id != null)
-				return 1;
-		} else if (!id.equals(other.id))
-			return id.compareTo(other.id);
-		
-		if (position == null) {
-			if (other.position != null)
-				return 1;
-		} else if (!position.equals(other.position))
-			return position.compareTo(other.position);
-		
-		if (start == null) {
-			if (other.start != null)
-				return 1;
-		} else if (!start.equals(other.start))
-			return start.compareTo(other.start);
-		
-		if (deliveryCompany == null) {
-			if (other.deliveryCompany != null)
-				return 1;
-		} else if (!deliveryCompany.equals(other.deliveryCompany))
-			return deliveryCompany.compareTo(other.deliveryCompany);
-		
-		if (state != other.state)
-			return state.compareTo(other.state);
-		
-		if (startTransitTime == null) {
-			if (other.startTransitTime != null)
-				return 1;
-		} else if (!startTransitTime.equals(other.startTransitTime))
-			return Long.compare(startTransitTime,other.startTransitTime);
-		
-		if (endTransitTime == null) {
-			if (other.endTransitTime != null)
-				return 1;
-		} else if (!endTransitTime.equals(other.endTransitTime))
-			return Long.compare(endTransitTime,other.endTransitTime);
-		
-		return 0;
+			return 1;
+		if (id == null)
+			return (other.id == null) ? 0 : -1;
+		if (other.id == null)
+			return 1;
+		return id.compareTo(other.id);
 	}
 	
 	public String toString(){
@@ -269,7 +241,7 @@ public class Person implements Comparable<Person>, Savable{
 		out.append("name: "+name+",");
 		out.append("start: "+start+",");
 		out.append("destination: "+destination+",");
-		out.append("position: "+position.toString()+",");
+		out.append("position: "+getPosition().toString()+",");
 		out.append("state: "+state.toString()+",");
 		out.append("delivery company: "+deliveryCompany+",");
 		out.append("start transit time : "+startTransitTime+",");
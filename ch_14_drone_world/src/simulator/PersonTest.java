@@ -2,6 +2,10 @@ package simulator;
 
 import static org.junit.Assert.*;
 
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -148,5 +152,39 @@ public class PersonTest {
 		assertTrue(doug.hashCode() != sarah.hashCode());
 		*/
 	}
+	
+	@Test
+	public void testIdentity() {
+		Person doug = makeDummyPerson();
+		Person copy = new Person(doug);
+		Set<Person> hashed = new HashSet<Person>();
+		hashed.add(doug);
+		Set<Person> sorted = new TreeSet<Person>();
+		sorted.add(doug);
+		int hash = doug.hashCode();
+		
+		//Who someone is doesn't change as they travel
+		doug.setState(PersonState.IN_DRONE);
+		doug.setPosition(new Position(1,2,3));
+		doug.setDeliveryCompany("Drones Inc.");
+		doug.setStartTransitTime(100L);
+		assertEquals(hash,doug.hashCode());
+		assertTrue(hashed.contains(doug));
+		assertTrue(sorted.contains(doug));
+		assertEquals(copy,doug);
+		assertEquals(0,copy.compareTo(doug));
+		assertTrue(hashed.contains(copy));
+		
+		//Everything else is still there to compare
+		assertFalse(copy.deepEquals(doug));
+		assertTrue(new Person(doug).deepEquals(doug));
+		
+		Person other = new Person("02","Doug","Paris",doug.getPosition(),"Cape Town",PersonState.WAITING);
+		assertNotEquals(doug,other);
+		assertTrue(doug.compareTo(other) < 0);
+		assertTrue(other.compareTo(doug) > 0);
+		assertTrue(doug.compareTo(null) > 0);
+		assertFalse(doug.equals(null));
+	}
 
 }
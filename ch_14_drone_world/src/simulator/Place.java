@@ -1,23 +1,28 @@
 package simulator;
 
+import java.util.Iterator;
 import java.util.LinkedList;
-import java.util.ListIterator;
 
-public class Place implements Comparable<Place>{
+import simulator.interfaces.PlaceView;
+
+/**
+ * A place is known by its name and position.  Places are hashed, sorted and told apart by those alone, so the people
+ * waiting there don't change where it goes in a set.  Use deepEquals to compare the rest.
+ */
+public class Place implements Comparable<Place>, PlaceView{
 	
-	private String name;
+	private final String name;
 	private Position position;
 	
-	private LinkedList<Person> waitingToEmbark;
+	private WaitingList waitingToEmbark;
+	
+	//What controllers are shown of this place, made the first time it is needed
+	private Place view;
 	
 	public String getName() {
 		return name;
 	}
 
-	void setName(String name) {
-		this.name = name;
-	}
-
 
 	public Position getPosition(){
 		return new Position(position);
@@ -26,13 +31,66 @@ public class Place implements Comparable<Place>{
 	void setPosition(Position position) {
 		this.position = position;
 	}
+	
+	/**
+	 * @return the position itself rather than a copy, it can't be changed outside the package
+	 */
+	Position peekPosition(){
+		return position;
+	}
 
 	public LinkedList<Person> getWaitingToEmbark() {
 		return waitingToEmbark;
 	}
-
+	
 	void setWaitingToEmbark(LinkedList<Person> waitingToEmbark) {
+		//The simulator boards from a WaitingList, anything else is copied into one
+		if(waitingToEmbark instanceof WaitingList){
+			this.waitingToEmbark = (WaitingList) waitingToEmbark;
+		}
+		else{
+			this.waitingToEmbark = new WaitingList(waitingToEmbark);
+		}
+		view = null;
+	}
+	
+	/**
+	 * @return the people waiting here with their counts by destination, which is what the simulator boards from
+	 */
+	WaitingList peekWaiting() {
+		return waitingToEmbark;
+	}
+
+	/**
+	 * Refuse changes to who is waiting here, for the copies the simulator shares between controllers
+	 */
+	void makeReadOnly(){
+		waitingToEmbark.makeReadOnly();
+	}
+
+	@Override
+	public Place snapshot(){
+		return new Place(this);
+	}
+	
+	/**
+	 * @return a place that can't be changed but shares this one's position and waiting people, what controllers
+	 * are shown as a drone's start and destination
+	 */
+	Place view(){
+		Place current = view;
+		if(current == null){
+			current = new Place(name,position,waitingToEmbark.readOnlyView());
+			view = current;
+		}
+		return current;
+	}
+	
+	private Place(String name,Position position,WaitingList waitingToEmbark){
+		this.name = name;
+		this.position = position;
 		this.waitingToEmbark = waitingToEmbark;
+		this.view = this;
 	}
 
 	public Place(String name, Position position){
@@ -43,13 +101,13 @@ public class Place implements Comparable<Place>{
 		else{
 			this.position = new Position(position);
 		}
-		this.waitingToEmbark = new LinkedList<Person>();
+		this.waitingToEmbark = new WaitingList();
 	}
 	
 	public Place(Place place){
-		this.setName(place.getName());
+		this.name = place.name;
 		this.setPosition(new Position(place.getPosition()));
-		this.setWaitingToEmbark(new LinkedList<Person>());
+		this.waitingToEmbark = new WaitingList();
 		for(Person p: place.getWaitingToEmbark()){
 			this.getWaitingToEmbark().add(new Person(p));
 		}
@@ -62,19 +120,40 @@ public class Place implements Comparable<Place>{
 		int result = 1;
 		result = prime * result + ((name == null) ? 0 : name.hashCode());
 		result = prime * result + ((position == null) ? 0 : position.hashCode());
-		result = prime * result + ((waitingToEmbark == null) ? 0 : waitingToEmbark.hashCode());
 		return result;
 	}
 
+	/**
+	 * Places are the same place if they have the same name and position
+	 */
 	@Override
 	public boolean equals(Object obj) {
 		if (this == obj)
 			return true;
-		if (obj == null)
-			return false;
 		if (!(obj instanceof Place))
 			return false;
 		Place other = (Place) obj;
+		if (name == null) {
+			if (other.name != null)
+				return false;
+		} else if (!name.equals(other.name))
+			return false;
+		if (position == null) {
+			if (other.position != null)
+				return false;
+		} else if (!position.equals(other.position))
+			return false;
+		return true;
+	}
+	
+	/**
+	 * Compare everything about two places, including who is waiting at them
+	 */
+	public boolean deepEquals(Place other) {
+		if (this == other)
+			return true;
+		if (other == null)
+			return false;
 		if (name == null) {
 			if (other.name != null)
 				return false;
@@ -88,12 +167,21 @@ public class Place implements Comparable<Place>{
 		if (waitingToEmbark == null) {
 			if (other.waitingToEmbark != null)
 				return false;
-		} else if (!waitingToEmbark.equals(other.waitingToEmbark))
+		} else if (waitingToEmbark.size() != other.waitingToEmbark.size())
 			return false;
+		else {
+			Iterator<Person> theirs = other.waitingToEmbark.iterator();
+			for(Person p: waitingToEmbark){
+				if(!p.deepEquals(theirs.next()))
+					return false;
+			}
+		}
 		return true;
 	}
-	
 
+	/**
+	 * Places are in order by name, then position
+	 */
 	@Override
 	public int compareTo(Place other) {
 		if (this == other)
@@ -112,31 +200,12 @@ public class Place implements Comparable<Place>{
 		if (position == null) {
 			if (other.position != null)
 				return -1;
+		} else if (other.position == null){
+			return 1;
 		} else if (!position.equals(other.position))
 			return position.compareTo(other.position);
 		
-		if (waitingToEmbark == null) {
-			if (other.waitingToEmbark != null)
-				return -1;
-		} else if (!waitingToEmbark.equals(other.waitingToEmbark)) {
-			ListIterator<Person> a = waitingToEmbark.listIterator();
-			ListIterator<Person> b = other.waitingToEmbark.listIterator();
-			while(a.hasNext() && b.hasNext()){
-				int c = a.next().compareTo(b.next());
-				if(c != 0){
-					return c;
-				}
-			}
-			if(a.hasNext()){
-				return 1;
-			}
-			if(b.hasNext()){
-				return -1;
-			}
-		}
-		
 		return 0;
 	}
 	
 }
-
@@ -0,0 +1,76 @@
+package simulator;
+
+import java.util.HashMap;
+
+import simulator.interfaces.PlaceView;
+
+/**
+ * The names of a simulator's places by index, the same index getPlaceIndex gives, and the index for each name.
+ * Manifests and waiting lists turn names into indexes here, so a name that isn't one of the places never gets one.
+ * The indexes belong to the simulator, so the same places can be in more than one simulator.
+ */
+final class PlaceNames {
+
+	//For manifests that aren't part of a simulator yet, no name has an index
+	static final PlaceNames NONE = new PlaceNames(new Place[0]);
+
+	//Where each place is, as Place.getPosition gives it
+	private final Position[] positions;
+	private final String[] names;
+	private final HashMap<String,Integer> indexes;
+
+	/**
+	 * @param places the places in index order
+	 */
+	PlaceNames(Place[] places){
+		positions = new Position[places.length];
+		names = new String[places.length];
+		indexes = new HashMap<String,Integer>();
+		for(int i = 0; i < places.length; i++){
+			names[i] = places[i].getName();
+			positions[i] = places[i].getPosition();
+			indexes.put(names[i],i);
+		}
+	}
+
+	/**
+	 * @return the index of the place with this name, -1 if there isn't one
+	 */
+	int indexOf(String name){
+		Integer index = indexes.get(name);
+		return (index == null) ? -1 : index;
+	}
+
+	/**
+	 * @return the index of a place, or of the place a view or copy is of, -1 if it isn't one of these places
+	 */
+	int indexOf(PlaceView place){
+		if(place == null){
+			return -1;
+		}
+		Position position = place.getPosition();
+		if(position == null){
+			position = new Position(null);
+		}
+		int index = indexOf(place.getName());
+		if((index >= 0) && positions[index].equals(position)){
+			return index;
+		}
+		//Places can share a name as long as they are somewhere else
+		for(int i = 0; i < names.length; i++){
+			if(names[i].equals(place.getName()) && positions[i].equals(position)){
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	String nameOf(int index){
+		return names[index];
+	}
+
+	int size(){
+		return names.length;
+	}
+
+}
@@ -2,12 +2,23 @@ package simulator;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import reference.MySimulationController;
+
+import simulator.enums.PersonState;
+
 public class PlaceTest {
 
 	@BeforeClass
@@ -64,6 +75,7 @@ public class PlaceTest {
 		assertTrue(place1.equals(place2));
 		assertTrue(place1.compareTo(place2) == 0);
 		assertTrue(place2.compareTo(place1) == 0);
+		assertTrue(place1.deepEquals(place2));
 		
 		place1 = new Place(null, position);
 		place2 = new Place(null, position);
@@ -91,6 +103,7 @@ public class PlaceTest {
 		assertTrue(place1.hashCode() == place2.hashCode());
 		assertTrue(place1.compareTo(place2) == 0);
 		assertTrue(place2.compareTo(place1) == 0);
+		assertTrue(place1.deepEquals(place2));
 		
 		place1 = new Place(name, null);
 		place2 = new Place(name, position);
@@ -106,10 +119,100 @@ public class PlaceTest {
 		assertTrue(place1.compareTo(place2) < 0);
 		assertTrue(place2.compareTo(place1) > 0);
 		
+		/* A place is the same place whoever is waiting there */
 		place1 = new Place(name, position);
 		place2 = new Place(name, position);
 		place1.getWaitingToEmbark().add(PersonTest.makeDummyPerson());
-		assertTrue(!place1.equals(place2));
-		assertTrue(place1.hashCode() != place2.hashCode());
+		assertTrue(place1.equals(place2));
+		assertTrue(place1.compareTo(place2) == 0);
+		assertTrue(place1.hashCode() == place2.hashCode());
+		assertTrue(!place1.deepEquals(place2));
+		assertTrue(new Place(place1).deepEquals(place1));
+	}
+	
+	@Test
+	public void testIndex() {
+		Place first = new Place("PlaceTest b", new Position(10.0,20.0,0.0));
+		Place second = new Place("PlaceTest a", new Position(10.0,20.0,0.0));
+		
+		//Places sort by name, and a simulator numbers its places in that order
+		assertTrue(first.compareTo(second) > 0);
+		assertTrue(second.compareTo(first) < 0);
+		Simulator simulator = new Simulator(new MySimulationController(),null,Arrays.asList(first,second),null);
+		assertEquals(0,simulator.indexOf(second));
+		assertEquals(1,simulator.indexOf(first));
+		assertEquals(1,simulator.getPlaceIndex("PlaceTest b"));
+		assertEquals(1,simulator.indexOf(new Place(first)));
+		assertEquals(1,simulator.indexOf(first.view()));
+		assertEquals(-1,simulator.indexOf(new Place("PlaceTest c", null)));
+		//The same name somewhere else is another place
+		assertEquals(-1,simulator.indexOf(new Place("PlaceTest b", new Position(-10.0,20.0,0.0))));
+		
+		//Another simulator over the same places numbers them for itself, without changing the first one's numbers
+		Place third = new Place("PlaceTest 0", new Position(10.0,20.0,0.0));
+		Simulator other = new Simulator(new MySimulationController(),null,Arrays.asList(first,second,third),null);
+		assertEquals(2,other.indexOf(first));
+		assertEquals(1,simulator.indexOf(first));
+		
+		//Where a place sorts doesn't change as people come and go
+		TreeSet<Place> sorted = new TreeSet<Place>();
+		sorted.add(first);
+		sorted.add(second);
+		second.getWaitingToEmbark().add(PersonTest.makeDummyPerson());
+		assertTrue(sorted.contains(second));
+		assertEquals(second,sorted.first());
+	}
+	
+	@Test
+	public void testWaitingByDestination() {
+		Place here = new Place("PlaceTest here", new Position(10.0,20.0,0.0));
+		PlaceNames names = new PlaceNames(new Place[]{here,new Place("PlaceTest north", null),new Place("PlaceTest south", null)});
+		List<Person> waiting = here.getWaitingToEmbark();
+		Person[] people = new Person[6];
+		for(int i = 0; i < people.length; i++){
+			String destination = (i%3 == 0) ? "PlaceTest north" : ((i%3 == 1) ? "PlaceTest south" : "PlaceTest east");
+			people[i] = new Person("PlaceTest "+i,"Rider "+i,here.getName(),here.getPosition(),destination,PersonState.WAITING);
+			waiting.add(people[i]);
+		}
+		assertEquals(Arrays.asList(people),waiting);
+		assertTrue(waiting.contains(people[4]));
+		assertFalse(waiting.contains(PersonTest.makeDummyPerson()));
+		
+		//Only the people going to the manifest's places board, in the order they came
+		WaitingList queue = here.peekWaiting();
+		queue.setNames(names);
+		Manifest manifest = new Manifest(names,Arrays.asList("PlaceTest north","PlaceTest south","Nowhere"));
+		assertTrue(queue.anyGoingTo(manifest));
+		assertFalse(queue.anyGoingTo(new Manifest(names,Collections.singleton("Nowhere"))));
+		//A manifest over other places is matched by name
+		assertTrue(queue.anyGoingTo(new Manifest(new PlaceNames(new Place[]{new Place("PlaceTest south", null)}),Collections.singleton("PlaceTest south"))));
+		List<Person> taken = new ArrayList<Person>();
+		assertEquals(3,queue.take(manifest,3,taken));
+		assertEquals(Arrays.asList(people[0],people[1],people[3]),taken);
+		assertEquals(Arrays.asList(people[2],people[4],people[5]),waiting);
+		
+		//However they leave, the counts by destination keep up
+		assertTrue(waiting.remove(people[4]));
+		assertFalse(waiting.remove(people[4]));
+		Iterator<Person> i = waiting.iterator();
+		i.next();
+		i.remove();
+		waiting.add(0,people[1]);
+		waiting.add(people[0]);
+		assertEquals(Arrays.asList(people[1],people[5],people[0]),waiting);
+		taken.clear();
+		assertEquals(2,queue.take(manifest,5,taken));
+		assertEquals(Arrays.asList(people[1],people[0]),taken);
+		assertFalse(queue.anyGoingTo(manifest));
+		assertTrue(queue.anyGoingTo(null));
+		
+		//So does swapping someone for someone going somewhere else
+		waiting.set(0,people[3]);
+		assertTrue(queue.anyGoingTo(manifest));
+		
+		waiting.clear();
+		assertEquals(0,waiting.size());
+		assertFalse(queue.anyGoingTo(null));
+		assertEquals(0,queue.take(null,1,taken));
 	}
 }
@@ -0,0 +1,116 @@
+package simulator;
+
+import java.nio.ByteBuffer;
+
+/**
+ * How often a controller wants droneTransiting.  The calls in between are dropped, nothing else about the
+ * flight changes.  The simulator remembers the round and progress of the last call made for each drone and
+ * starts again from 0 when a drone sets off.
+ */
+public final class ProgressPolicy {
+	
+	private enum Kind {EVERY_TICK, EVERY_N_TICKS, EVERY_PERCENT, ON_CHANGE}
+	
+	private static final ProgressPolicy EVERY_TICK = new ProgressPolicy(Kind.EVERY_TICK,0,0.0);
+	
+	private final Kind kind;
+	private final long ticks;
+	private final double fraction;
+	
+	private ProgressPolicy(Kind kind,long ticks,double fraction){
+		this.kind = kind;
+		this.ticks = ticks;
+		this.fraction = fraction;
+	}
+	
+	/**
+	 * @return a call every round, what controllers get unless they ask for something else
+	 */
+	public static ProgressPolicy everyTick(){
+		return EVERY_TICK;
+	}
+	
+	/**
+	 * @param n how many rounds apart the calls are
+	 */
+	public static ProgressPolicy everyTicks(long n){
+		if(n < 1){
+			throw new IllegalArgumentException("Need at least one round between calls:"+n);
+		}
+		return (n == 1) ? EVERY_TICK : new ProgressPolicy(Kind.EVERY_N_TICKS,n,0.0);
+	}
+	
+	/**
+	 * @param fraction a call each time the progress passes a multiple of this, e.g., 0.1 for every 10% of the trip
+	 */
+	public static ProgressPolicy everyPercent(double fraction){
+		if(fraction <= 0){
+			throw new IllegalArgumentException("Fraction has to be positive:"+fraction);
+		}
+		return new ProgressPolicy(Kind.EVERY_PERCENT,0,fraction);
+	}
+	
+	/**
+	 * @param fraction a call when the progress has moved by at least this much since the last one
+	 */
+	public static ProgressPolicy onChange(double fraction){
+		if(fraction <= 0){
+			throw new IllegalArgumentException("Fraction has to be positive:"+fraction);
+		}
+		return new ProgressPolicy(Kind.ON_CHANGE,0,fraction);
+	}
+	
+	boolean isEveryTick(){
+		return kind == Kind.EVERY_TICK;
+	}
+	
+	/**
+	 * @param roundsSinceLast how many rounds since the last call, or since the drone set off
+	 * @param lastProgress the progress given in the last call, 0 if there hasn't been one
+	 * @param progress the progress now
+	 * @return true if the controller should be called
+	 */
+	boolean shouldNotify(long roundsSinceLast,double lastProgress,double progress){
+		switch (kind){
+			case EVERY_N_TICKS:
+				return roundsSinceLast >= ticks;
+			case EVERY_PERCENT:
+				return Math.floor(progress/fraction) != Math.floor(lastProgress/fraction);
+			case ON_CHANGE:
+				return Math.abs(progress - lastProgress) >= fraction;
+			default:
+				return true;
+		}
+	}
+	
+	/**
+	 * Write the policy into a frame for a controller host to send
+	 */
+	void writeTo(ByteBuffer buffer){
+		buffer.put((byte) kind.ordinal());
+		buffer.putLong(ticks);
+		buffer.putDouble(fraction);
+	}
+	
+	static ProgressPolicy readFrom(ByteBuffer buffer){
+		Kind kind = Kind.values()[buffer.get()];
+		long ticks = buffer.getLong();
+		double fraction = buffer.getDouble();
+		return (kind == Kind.EVERY_TICK) ? EVERY_TICK : new ProgressPolicy(kind,ticks,fraction);
+	}
+	
+	@Override
+	public String toString(){
+		switch (kind){
+			case EVERY_N_TICKS:
+				return "every "+ticks+" rounds";
+			case EVERY_PERCENT:
+				return "every "+(fraction*100)+"%";
+			case ON_CHANGE:
+				return "on a change of "+(fraction*100)+"%";
+			default:
+				return "every round";
+		}
+	}
+
+}
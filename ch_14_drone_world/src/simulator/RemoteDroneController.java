@@ -0,0 +1,399 @@
+package simulator;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ProcessBuilder.Redirect;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import simulator.enums.DroneEvent;
+import simulator.enums.DroneState;
+import simulator.enums.PersonState;
+import simulator.interfaces.BatchDroneController;
+import simulator.interfaces.DroneView;
+
+/**
+ * Stands in for a DroneController that runs in a ControllerHost, in a JVM of its own, so its allocations and
+ * pauses stay out of the simulation and a crash only stops its drones.  Each round the host is sent what the
+ * controller can see - the places, the people and the controller's own drones - with the round's call backs,
+ * and sends back the routes and manifests the controller decided on.  They are applied like any other batch
+ * controller's decisions.  If the host dies or doesn't answer in time its drones are left to themselves.
+ */
+public class RemoteDroneController implements BatchDroneController {
+
+	private static final long STARTUP_NANOS = TimeUnit.SECONDS.toNanos(30);
+	private static final long POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+	private final ControllerChannel channel;
+	//The host process if this started it, otherwise null
+	private final Process host;
+	private final String companyName;
+	private final Set<DroneEvent> subscriptions;
+	private final ProgressPolicy policy;
+	private long timeoutNanos = TimeUnit.SECONDS.toNanos(1);
+	private Simulator simulator;
+	private boolean stopped;
+
+	//Set up before the first round, in the order they are sent to the host
+	private Drone[] drones;
+	private Map<String,Integer> droneIndex;
+	private Person[] people;
+	private Map<Person,Integer> personIndex;
+
+	private long roundTrips;
+	private long roundTripNanos;
+
+	/**
+	 * Start a ControllerHost running the named controller in a new JVM with this one's class path
+	 * @param controllerClass a DroneController with a constructor that takes no arguments
+	 */
+	public static RemoteDroneController launch(String controllerClass) throws IOException {
+		File path = File.createTempFile("controller",".ring");
+		path.deleteOnExit();
+		String java = System.getProperty("java.home")+File.separator+"bin"+File.separator+"java";
+		ProcessBuilder builder = new ProcessBuilder(java,"-cp",System.getProperty("java.class.path"),ControllerHost.class.getName(),path.getPath(),controllerClass);
+		//Standard input stays a pipe, the host stops when it closes
+		builder.redirectOutput(Redirect.INHERIT);
+		builder.redirectError(Redirect.INHERIT);
+		Process process = builder.start();
+		try {
+			return new RemoteDroneController(path,process);
+		} catch (IOException e) {
+			process.destroy();
+			throw e;
+		}
+	}
+
+	/**
+	 * Talk to a ControllerHost that was started some other way on this channel file
+	 */
+	public RemoteDroneController(File channel) throws IOException {
+		this(channel,null);
+	}
+
+	private RemoteDroneController(File path,Process host) throws IOException {
+		this.channel = new ControllerChannel(path,true,ControllerChannel.DEFAULT_CAPACITY);
+		this.host = host;
+
+		//The host says hello once its controller is ready
+		ByteBuffer hello = null;
+		long deadline = System.nanoTime() + STARTUP_NANOS;
+		while((hello == null) && (System.nanoTime() - deadline < 0)){
+			if((host != null) && !host.isAlive()){
+				break;
+			}
+			hello = channel.receive(POLL_NANOS);
+		}
+		if((hello == null) || (hello.get() != ControllerChannel.HELLO)){
+			channel.close();
+			throw new IOException("No controller host answered on "+path);
+		}
+		companyName = ControllerChannel.getString(hello);
+		int mask = hello.getInt();
+		subscriptions = EnumSet.noneOf(DroneEvent.class);
+		for(DroneEvent event: DroneEvent.values()){
+			if((mask & (1 << event.ordinal())) != 0){
+				subscriptions.add(event);
+			}
+		}
+		policy = ProgressPolicy.readFrom(hello);
+	}
+
+	/**
+	 * @param timeout how long to wait for the host each round before giving up on it
+	 */
+	public void setTimeout(long timeout,TimeUnit unit){
+		this.timeoutNanos = unit.toNanos(timeout);
+	}
+
+	/**
+	 * @return false once the host has died, timed out or been closed
+	 */
+	public boolean isRunning(){
+		return !stopped;
+	}
+
+	/**
+	 * @return how many rounds have been sent to the host and answered
+	 */
+	public long getRoundTrips(){
+		return roundTrips;
+	}
+
+	/**
+	 * @return the wall clock time of all the answered rounds, from starting to send to having the answer
+	 */
+	public long getRoundTripNanos(){
+		return roundTripNanos;
+	}
+
+	/**
+	 * Tell the host to stop and let go of the channel
+	 */
+	public void close(){
+		if(!stopped){
+			channel.begin(ControllerChannel.SHUTDOWN);
+			channel.send(timeoutNanos);
+		}
+		stopped = true;
+		channel.close();
+		if(host != null){
+			try {
+				host.waitFor(1,TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			host.destroy();
+		}
+	}
+
+	@Override
+	public void setSimulator(Simulator simulator) {
+		this.simulator = simulator;
+	}
+
+	@Override
+	public Set<DroneEvent> getSubscribedEvents(){
+		return subscriptions;
+	}
+
+	@Override
+	public ProgressPolicy getTransitProgressPolicy(){
+		return policy;
+	}
+
+	@Override
+	public String getNextDroneName() {
+		channel.begin(ControllerChannel.NEXT_NAME);
+		ByteBuffer answer = roundTrip();
+		if((answer == null) || (answer.get() != ControllerChannel.NAME)){
+			throw new IllegalStateException("The controller host for "+companyName+" didn't give a drone name");
+		}
+		return ControllerChannel.getString(answer);
+	}
+
+	@Override
+	public String getCompanyName() {
+		return companyName;
+	}
+
+	@Override
+	public void droneEvents(DroneEventBatch events, DroneDecisions decisions) {
+		if(stopped){
+			return;
+		}
+		long started = System.nanoTime();
+		ByteBuffer answer;
+		try {
+			if(drones == null){
+				sendWorld();
+			}
+			writeRound(channel.begin(ControllerChannel.EVENTS),events);
+			answer = roundTrip();
+		} catch (BufferOverflowException e) {
+			stop("a round is too big for the channel");
+			return;
+		}
+		if(answer == null){
+			return;
+		}
+		try {
+			switch (answer.get()){
+				case ControllerChannel.COMMANDS:
+					readCommands(answer,decisions);
+					break;
+				case ControllerChannel.FAILED:
+					System.out.println("Controller host for "+companyName+" failed at "+events.getTick()+": "+ControllerChannel.getString(answer));
+					break;
+				default:
+					stop("it answered a round with something else");
+					return;
+			}
+		} catch (RuntimeException e) {
+			stop("its commands didn't make sense, "+e);
+			return;
+		}
+		roundTrips++;
+		roundTripNanos += System.nanoTime() - started;
+	}
+
+	/**
+	 * Send the frame that has been started and wait for the answer
+	 * @return the answer, or null if the host has stopped answering
+	 */
+	private ByteBuffer roundTrip(){
+		if(stopped){
+			return null;
+		}
+		if(!channel.send(timeoutNanos)){
+			stop("it stopped reading");
+			return null;
+		}
+		ByteBuffer answer = channel.receive(timeoutNanos);
+		if(answer == null){
+			stop("it didn't answer in time");
+		}
+		return answer;
+	}
+
+	private void stop(String why){
+		if(!stopped){
+			System.out.println("Giving up on the controller host for "+companyName+": "+why);
+			stopped = true;
+			if(host != null){
+				host.destroy();
+			}
+		}
+	}
+
+	/**
+	 * Tell the host about the places, the people and this controller's drones, in the order they will be sent every round
+	 */
+	private void sendWorld(){
+		List<Drone> mine = new ArrayList<Drone>();
+		for(Drone d: simulator.getDrones()){
+			if(d.getController() == this){
+				mine.add(simulator.droneById(d.getId()));
+			}
+		}
+		drones = mine.toArray(new Drone[mine.size()]);
+		droneIndex = new HashMap<String,Integer>();
+		Collection<Person> everyone = simulator.livePeople();
+		people = everyone.toArray(new Person[everyone.size()]);
+		personIndex = new IdentityHashMap<Person,Integer>();
+
+		ByteBuffer frame = channel.begin(ControllerChannel.WORLD);
+		frame.putInt(simulator.getPlaceCount());
+		for(int i = 0; i < simulator.getPlaceCount(); i++){
+			Place place = simulator.placeAt(i);
+			ControllerChannel.putString(frame,place.getName());
+			putPosition(frame,place.getPosition());
+		}
+		frame.putInt(people.length);
+		for(int i = 0; i < people.length; i++){
+			Person p = people[i];
+			personIndex.put(p,i);
+			ControllerChannel.putString(frame,p.getId());
+			ControllerChannel.putString(frame,p.getName());
+			ControllerChannel.putString(frame,p.getStart());
+			ControllerChannel.putString(frame,p.getDestination());
+			putPosition(frame,p.getPosition());
+			frame.put(stateOf(p.getState()));
+		}
+		frame.putInt(drones.length);
+		for(int i = 0; i < drones.length; i++){
+			Drone d = drones[i];
+			droneIndex.put(d.getId(),i);
+			ControllerChannel.putString(frame,d.getId());
+			ControllerChannel.putString(frame,d.getName());
+			frame.putInt(d.getCapacity());
+			frame.putDouble(d.getRechargeRate());
+			frame.putDouble(d.getDischargeRate());
+			frame.putInt(indexOf(d.getStart()));
+			frame.putInt(indexOf(d.getDestination()));
+		}
+		if(!channel.send(timeoutNanos)){
+			stop("it stopped reading");
+		}
+	}
+
+	private void writeRound(ByteBuffer frame,DroneEventBatch events){
+		frame.putLong(events.getTick());
+		for(Person p: people){
+			frame.put(stateOf(p.getState()));
+		}
+		for(int i = 0; i < simulator.getPlaceCount(); i++){
+			putPeople(frame,simulator.placeAt(i).getWaitingToEmbark());
+		}
+		for(Drone d: drones){
+			DroneState state = d.getState();
+			frame.put((state == null) ? -1 : (byte) state.ordinal());
+			frame.putInt(indexOf(d.getStart()));
+			frame.putInt(indexOf(d.getDestination()));
+			putPosition(frame,d.getPosition());
+			frame.putDouble(d.getCharge());
+			frame.putLong(d.getEmbarkingStart());
+			frame.putLong(d.getDisembarkingStart());
+			frame.putLong(d.getTransitStart());
+			frame.putLong(d.getTransitEnd());
+			putPeople(frame,d.getPassengers());
+			putPeople(frame,d.getEmbarkers());
+			putPeople(frame,d.getDisembarkers());
+			//The manifest's bits are already by place index
+			Manifest manifest = d.peekManifest();
+			int countAt = frame.position();
+			frame.putInt(0);
+			int count = 0;
+			for(int place = manifest.nextPlace(0); place >= 0; place = manifest.nextPlace(place + 1)){
+				frame.putInt(place);
+				count++;
+			}
+			frame.putInt(countAt,count);
+		}
+		frame.putInt(events.size());
+		for(int i = 0; i < events.size(); i++){
+			frame.put((byte) events.getEvent(i).ordinal());
+			frame.putInt(droneIndex.get(events.getDrone(i).getId()));
+			frame.putDouble(events.getValue(i));
+		}
+	}
+
+	private void readCommands(ByteBuffer frame,DroneDecisions decisions){
+		int count = frame.getInt();
+		for(int i = 0; i < count; i++){
+			byte kind = frame.get();
+			DroneView drone = drones[frame.getInt()];
+			if(kind == ControllerChannel.ROUTE){
+				decisions.route(drone,place(frame.getInt()));
+			}
+			else{
+				Manifest manifest = new Manifest(simulator.getPlaceNames());
+				for(int places = frame.getInt(); places > 0; places--){
+					manifest.add(place(frame.getInt()));
+				}
+				decisions.setManifest(drone,manifest);
+			}
+		}
+	}
+
+	/**
+	 * @return the index of a place the host sent, checked
+	 */
+	private int place(int index){
+		if((index < 0) || (index >= simulator.getPlaceCount())){
+			throw new IllegalStateException("The host sent a place that doesn't exist:"+index);
+		}
+		return index;
+	}
+
+	private int indexOf(Place place){
+		return simulator.indexOf(place);
+	}
+
+	private void putPeople(ByteBuffer frame,Collection<Person> group){
+		frame.putInt(group.size());
+		for(Person p: group){
+			frame.putInt(personIndex.get(p));
+		}
+	}
+
+	static void putPosition(ByteBuffer frame,Position position){
+		frame.putDouble(position.getLatitude());
+		frame.putDouble(position.getLongitude());
+		frame.putDouble(position.getHeight());
+	}
+
+	static byte stateOf(PersonState state){
+		return (state == null) ? -1 : (byte) state.ordinal();
+	}
+
+}
@@ -0,0 +1,198 @@
+package simulator;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import simulator.enums.ClockMode;
+
+/**
+ * Paces the simulation's rounds against System.nanoTime, or whatever time source it is given.
+ * Round n is due at a fixed offset from when the current mode started, so small delays don't add up.  If the
+ * simulation falls behind, up to a budget of rounds are run back to back to catch up and the rest are skipped.
+ * The mode and speed can be changed from any thread while the simulation is running.
+ */
+public class SimClock {
+
+	/**
+	 * How the clock waits for a round or for someone to change its mode, always while holding its own lock
+	 */
+	interface Waiter {
+		/**
+		 * @param nanos how long to wait at most, 0 to wait until woken
+		 */
+		void await(SimClock clock,long nanos) throws InterruptedException;
+	}
+
+	private static final Waiter MONITOR = (clock,nanos) -> {
+		if(nanos == 0){
+			clock.wait();
+		}
+		else{
+			TimeUnit.NANOSECONDS.timedWait(clock,nanos);
+		}
+	};
+
+	private final LongSupplier nanoTime;
+	private final Waiter waiter;
+
+	//Simulated milliseconds in a round
+	private final long tickMillis;
+
+	private ClockMode mode = ClockMode.REAL_TIME;
+	//Simulated seconds per real second in SCALED mode
+	private double scale = 1.0;
+	//Most rounds run back to back to catch up
+	private int catchUpBudget = 10;
+	//Rounds still to run in STEP mode
+	private long pendingSteps;
+	private boolean stopped;
+
+	//When the current schedule started and how many rounds have been handed out since
+	private long anchorNanos;
+	private long ticksSinceAnchor;
+
+	public SimClock(long tickMillis){
+		this(tickMillis,System::nanoTime,MONITOR);
+	}
+
+	/**
+	 * @param nanoTime the time in nanoseconds, like System.nanoTime
+	 * @param waiter how to wait, the waits are what let other threads change the clock
+	 */
+	SimClock(long tickMillis,LongSupplier nanoTime,Waiter waiter){
+		if(tickMillis <= 0){
+			throw new IllegalArgumentException("A round has to take some time:"+tickMillis);
+		}
+		this.tickMillis = tickMillis;
+		this.nanoTime = nanoTime;
+		this.waiter = waiter;
+		reanchor();
+	}
+
+	public synchronized ClockMode getMode(){
+		return mode;
+	}
+
+	public synchronized void setMode(ClockMode mode){
+		if(mode == null){
+			throw new IllegalArgumentException("Clock mode can't be null");
+		}
+		this.mode = mode;
+		if(mode != ClockMode.STEP){
+			pendingSteps = 0;
+		}
+		reanchor();
+		notifyAll();
+	}
+
+	public synchronized double getScale(){
+		return scale;
+	}
+
+	/**
+	 * Run at a multiple of real time, this switches to SCALED mode
+	 * @param scale simulated seconds per real second
+	 */
+	public synchronized void setScale(double scale){
+		if(scale <= 0){
+			throw new IllegalArgumentException("Scale has to be positive:"+scale);
+		}
+		this.scale = scale;
+		setMode(ClockMode.SCALED);
+	}
+
+	public synchronized int getCatchUpBudget(){
+		return catchUpBudget;
+	}
+
+	/**
+	 * @param catchUpBudget how many late rounds to run back to back before giving up on the rest, at least 1
+	 */
+	public synchronized void setCatchUpBudget(int catchUpBudget){
+		this.catchUpBudget = Math.max(1,catchUpBudget);
+	}
+
+	/**
+	 * Run this many more rounds and then wait, this switches to STEP mode
+	 */
+	public synchronized void step(long rounds){
+		if(mode != ClockMode.STEP){
+			mode = ClockMode.STEP;
+			pendingSteps = 0;
+		}
+		pendingSteps += Math.max(0,rounds);
+		notifyAll();
+	}
+
+	/**
+	 * Go back to running rounds if the clock was stopped
+	 */
+	public synchronized void restart(){
+		stopped = false;
+		reanchor();
+	}
+
+	/**
+	 * Wake up anyone waiting for a round and tell them there won't be any more
+	 */
+	public synchronized void stop(){
+		stopped = true;
+		notifyAll();
+	}
+
+	/**
+	 * Wait until at least one round is due
+	 * @return how many rounds to run now, 0 once the clock has been stopped
+	 * @throws InterruptedException
+	 */
+	public synchronized int awaitTicks() throws InterruptedException {
+		while(!stopped){
+			switch (mode){
+				case MAX_SPEED:
+					return 1;
+				case PAUSED:
+					waiter.await(this,0);
+					break;
+				case STEP:
+					if(pendingSteps > 0){
+						pendingSteps--;
+						return 1;
+					}
+					waiter.await(this,0);
+					break;
+				default:{
+					long nanosPerTick = nanosPerTick();
+					long now = nanoTime.getAsLong();
+					long due = (now - anchorNanos)/nanosPerTick - ticksSinceAnchor;
+					if(due > 0){
+						if(due > catchUpBudget){
+							//Too far behind, let the skipped rounds go rather than trying to make them up
+							ticksSinceAnchor += due - catchUpBudget;
+							due = catchUpBudget;
+						}
+						ticksSinceAnchor += due;
+						return (int) due;
+					}
+					long sleep = anchorNanos + (ticksSinceAnchor + 1)*nanosPerTick - now;
+					waiter.await(this,Math.max(1,sleep));
+				}
+				break;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * @return the real time a round takes in the current mode
+	 */
+	private long nanosPerTick(){
+		double rate = (mode == ClockMode.SCALED) ? scale : 1.0;
+		return Math.max(1,(long) (tickMillis*1000000L/rate));
+	}
+
+	private void reanchor(){
+		anchorNanos = nanoTime.getAsLong();
+		ticksSinceAnchor = 0;
+	}
+
+}
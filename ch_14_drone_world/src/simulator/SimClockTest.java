@@ -0,0 +1,135 @@
+package simulator;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.junit.Test;
+
+import simulator.enums.ClockMode;
+
+public class SimClockTest {
+
+	/**
+	 * Time that only moves when the clock waits, so nothing depends on how long the test really takes
+	 */
+	private static class FakeTime implements SimClock.Waiter {
+		long now = 1000000000L;
+		//Extra time every timed wait takes, like a sleep that wakes up late
+		long oversleep;
+		int waits;
+		//What other threads do while the clock waits to be woken
+		Deque<Runnable> whileWaiting = new ArrayDeque<Runnable>();
+
+		SimClock clock(long tickMillis){
+			return new SimClock(tickMillis,() -> now,this);
+		}
+
+		@Override
+		public void await(SimClock clock,long nanos){
+			waits++;
+			if(nanos > 0){
+				now += nanos + oversleep;
+				return;
+			}
+			if(whileWaiting.isEmpty()){
+				fail("The clock would wait forever");
+			}
+			whileWaiting.poll().run();
+		}
+	}
+
+	@Test
+	public void testStep() throws InterruptedException {
+		FakeTime time = new FakeTime();
+		SimClock clock = time.clock(100);
+		clock.step(3);
+		assertEquals(ClockMode.STEP,clock.getMode());
+		for(int i = 0; i < 3; i++){
+			assertEquals(1,clock.awaitTicks());
+		}
+		assertEquals(0,time.waits);
+
+		//Out of steps, it waits for more
+		time.whileWaiting.add(() -> clock.step(2));
+		assertEquals(1,clock.awaitTicks());
+		assertEquals(1,clock.awaitTicks());
+		assertEquals(1,time.waits);
+
+		time.whileWaiting.add(clock::stop);
+		assertEquals(0,clock.awaitTicks());
+		assertEquals(2,time.waits);
+	}
+
+	@Test
+	public void testPauseAndResume() throws InterruptedException {
+		FakeTime time = new FakeTime();
+		SimClock clock = time.clock(1);
+		clock.setMode(ClockMode.PAUSED);
+
+		//Nothing runs until someone unpauses it, however long that takes
+		time.whileWaiting.add(() -> time.now += 5000000000L);
+		time.whileWaiting.add(() -> clock.setMode(ClockMode.MAX_SPEED));
+		assertEquals(1,clock.awaitTicks());
+		assertEquals(2,time.waits);
+		assertEquals(1,clock.awaitTicks());
+
+		clock.setMode(ClockMode.PAUSED);
+		time.whileWaiting.add(clock::stop);
+		assertEquals(0,clock.awaitTicks());
+		assertEquals(3,time.waits);
+	}
+
+	@Test
+	public void testScaledDoesNotDrift() throws InterruptedException {
+		//10ms rounds at 4x is a round every 2.5ms.  Every wait wakes up 0.3ms late, which would add up to over
+		//a tenth of the rounds if each wait was measured from the last
+		FakeTime time = new FakeTime();
+		time.oversleep = 300000;
+		SimClock clock = time.clock(10);
+		clock.setScale(4);
+		long start = time.now;
+		long rounds = 0;
+		while(time.now - start < 1000000000L){
+			rounds += clock.awaitTicks();
+		}
+		assertEquals((time.now - start)/2500000L,rounds);
+	}
+
+	@Test
+	public void testCatchUpBudget() throws InterruptedException {
+		FakeTime time = new FakeTime();
+		SimClock clock = time.clock(1);
+		clock.setCatchUpBudget(5);
+		//Fall 100 rounds behind, only the budget is made up
+		time.now += 100000000L;
+		assertEquals(5,clock.awaitTicks());
+		assertEquals(0,time.waits);
+		//The rest are let go, so the next round is a whole round away
+		long before = time.now;
+		assertEquals(1,clock.awaitTicks());
+		assertEquals(1000000L,time.now - before);
+		clock.stop();
+		assertEquals(0,clock.awaitTicks());
+	}
+
+	@Test
+	//The real clock still wakes up a waiting round when it is stopped from another thread
+	public void testStopWakesWaiter() throws InterruptedException {
+		SimClock clock = new SimClock(100);
+		clock.setMode(ClockMode.PAUSED);
+		Thread thread = new Thread(() -> {
+			try {
+				clock.awaitTicks();
+			} catch (InterruptedException e) {
+			}
+		});
+		thread.setDaemon(true);
+		thread.start();
+		clock.stop();
+		thread.join(10000);
+		assertFalse(thread.isAlive());
+	}
+
+}
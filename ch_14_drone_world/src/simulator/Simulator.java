@@ -2,24 +2,37 @@ package simulator;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Random;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import reference.DistanceAwarePromiscuousController;
 import reference.GreedyController;
 import reference.MySimulationController;
 import reference.PromiscuousController;
 import reference.RandomDroneController;
+import simulator.enums.ClockMode;
+import simulator.enums.DroneEvent;
 import simulator.enums.DroneState;
 import simulator.enums.PersonState;
+import simulator.enums.SimulationOutcome;
+import simulator.interfaces.BatchDroneController;
 import simulator.interfaces.DroneController;
+import simulator.interfaces.DroneView;
+import simulator.interfaces.PlaceView;
 import simulator.interfaces.SimulationController;
 import visualization.DroneWorld;
 
@@ -36,11 +49,16 @@ public class Simulator {
 	public static final int MAX_LOCATIONS = 100;
 	
 	private static final long SIMULATION_SPEED = 100;
+	//How long a headless run from main goes without progress before giving up, unless --stall-timeout says otherwise
+	private static final long HEADLESS_STALL_TIMEOUT = 30*60*1000L;
 	
 	private static final boolean PEOPLE_ALWAYS_BOARD_DRONE = false;
 	private static final boolean PEOPLE_ALWAYS_DISEMBARK_DRONE = false;
 	
-	private static final int TRANSIT_HEIGHT = 2;
+	static final int TRANSIT_HEIGHT = 2;
+	
+	//Charge levels at which a recharging drone's controller is told about its progress
+	private static final double[] RECHARGE_BREAKS = {0.1,0.2,0.3,0.4,0.5,0.6,0.7,0.8,0.9,1.0};
 	
 	private SimulationController simulationController;
 	
@@ -55,6 +73,82 @@ public class Simulator {
 	//Flags to end the simulation
 	private boolean simulationEnded;
 	private boolean quitting;
+	private SimulationOutcome outcome = SimulationOutcome.RUNNING;
+	private String outcomeReason;
+	
+	//The last time a drone or person changed state, a drone was busy, or a controller changed a route or manifest
+	private long lastProgressTick;
+	//How long to go without progress before giving up on the run, 0 to never give up unless asked to
+	private long stallTimeout = 0;
+	
+	//Run without pacing against the wall clock and without a visualization
+	private boolean headless;
+	//Decides when each round runs
+	private SimClock clock;
+	
+	//Only visit drones on the rounds where they have something to do
+	private boolean eventDriven;
+	private EventSchedule schedule;
+	
+	//Scratch space reused every round so that the main loop doesn't make garbage
+	private Drone[] shuffledDrones;
+	private int[] dueSlots;
+	//In event driven mode each round's shuffle is drawn from its own seed, worked out from this one and the
+	//round, so rounds that are skipped don't have to draw anything.  It is drawn on the first event driven round
+	private long shuffleSeed;
+	private boolean shuffleSeeded;
+	private final Random shuffleRandom = new Random();
+	private ArrayList<Person> waiting = new ArrayList<Person>();
+	//How many people are in each state
+	private int[] personCounts = new int[PersonState.values().length];
+	
+	//Where the drones keep their position, charge, state and timers
+	private DroneStore store;
+	//Drones by slot
+	private Drone[] droneSlots;
+	//Scratch space for working out how a drone moves in a round, drones are moved one at a time
+	private final DroneStep step = new DroneStep();
+	//How long the last call to start() took in real time, in nanoseconds
+	private long wallClockNanos;
+	
+	//The read-only copies getPlaces, getDrones and getPeople hand out, and the round they were made in
+	private TreeSet<Place> placesSnapshot;
+	private TreeSet<Drone> dronesSnapshot;
+	private TreeSet<Person> peopleSnapshot;
+	private long snapshotTick = Long.MIN_VALUE;
+	//Set once anyone has asked for the world, after which the copies are made at the start of every round
+	private boolean snapshotsWanted;
+	
+	//Per slot, a bit for each DroneEvent the drone's controller wants to hear about
+	private int[] subscriptions;
+	//How many call backs weren't made because the controller didn't want them, by DroneEvent
+	private long[] skippedCallbacks = new long[DroneEvent.values().length];
+	//Per slot, which controller the drone belongs to
+	private int[] controllerOf;
+	//Per controller, in the order of their first drone: the controller, whether it takes batches even when
+	//controllers aren't run concurrently, its batch and its decisions
+	private DroneController[] controllers;
+	private boolean[] takesBatches;
+	private DroneEventBatch[] controllerBatches;
+	private DroneDecisions[] controllerDecisions;
+	//Runs each controller's batch on its own thread, null when controllers run on the simulation thread
+	private ExecutorService controllerThreads;
+	private List<Callable<Void>> controllerTurns;
+	private List<Callable<Void>> dueTurns = new ArrayList<Callable<Void>>();
+	//Times the calls into each controller and holds them to a budget
+	private ControllerWatchdog watchdog;
+	//Where routes, manifests and plans go on a controller thread, they are applied once every controller is done
+	private final ThreadLocal<DroneDecisions> deferred = new ThreadLocal<DroneDecisions>();
+	//Fleet plans waiting for the end of the round
+	private final List<CommandBuffer> submittedCommands = new ArrayList<CommandBuffer>();
+	//Places by index and name, and drones by id, so that commands from controllers don't search
+	private Place[] placeOrder;
+	private PlaceNames placeNames;
+	private Map<String,Drone> dronesById;
+	//Per slot, how often to make droneTransiting and the round and progress of the last one made
+	private ProgressPolicy[] progressPolicies;
+	private long[] lastProgressCallTick;
+	private double[] lastProgressCall;
 
 	public Simulator(SimulationController simulationController,Collection<Person> people,Collection<Place> places,Collection<Drone> drones){
 		
@@ -64,6 +158,16 @@ public class Simulator {
 		
 		this.simulationController = simulationController;
 		
+		//Set up the speed of the simulation, 1 is real time and SIMULATION_SPEED is as fast as possible
+		clock = new SimClock(SIMULATION_SPEED);
+		long factor = simulationController.simulatorSpeed();
+		if(factor > SIMULATION_SPEED){
+			factor = SIMULATION_SPEED;
+		}
+		if(factor > 1){
+			clock.setScale(factor);
+		}
+		
 		this.people = new TreeSet<Person>();
 		if(people != null){
 			for(Person p: people){
@@ -78,13 +182,107 @@ public class Simulator {
 			}
 		}
 		
-		this.drones = new TreeSet<Drone>();
+		placeOrder = this.places.toArray(new Place[this.places.size()]);
+		placeNames = new PlaceNames(placeOrder);
+		//The people waiting are queued by where they are going, numbered like the places
+		for(Place p: placeOrder){
+			p.peekWaiting().setNames(placeNames);
+		}
+		
+		//Drones take their turns in the order they were handed over, ids are random so that can't come from them
+		this.drones = new LinkedHashSet<Drone>();
+		dronesById = new HashMap<String,Drone>();
 		if(drones != null){
 			for(Drone d: drones){
 				this.drones.add(d);
+				dronesById.put(d.getId(),d);
+				//Manifests are kept as bits over this simulator's places
+				if(d.peekManifest() != null){
+					d.setManifest(new Manifest(placeNames,d.peekManifest()));
+				}
 				d.getController().setSimulator(this);
 			}
 		}
+		
+		clockTick = -SIMULATION_SPEED;
+		
+		for(Person p: this.people){
+			if(p.getState() != null){
+				personCounts[p.getState().ordinal()]++;
+			}
+		}
+		shuffledDrones = new Drone[this.drones.size()];
+		dueSlots = new int[this.drones.size()];
+		
+		//Gather every drone's changing state into one store, in the same order as the drones
+		store = new DroneStore(this.drones.size());
+		droneSlots = new Drone[this.drones.size()];
+		subscriptions = new int[this.drones.size()];
+		progressPolicies = new ProgressPolicy[this.drones.size()];
+		lastProgressCallTick = new long[this.drones.size()];
+		lastProgressCall = new double[this.drones.size()];
+		Map<DroneController,Integer> subscriptionsByController = new IdentityHashMap<DroneController,Integer>();
+		Map<DroneController,ProgressPolicy> policiesByController = new IdentityHashMap<DroneController,ProgressPolicy>();
+		controllerOf = new int[this.drones.size()];
+		Map<DroneController,Integer> controllerIndex = new IdentityHashMap<DroneController,Integer>();
+		List<DroneController> controllerOrder = new ArrayList<DroneController>();
+		for(Drone d: this.drones){
+			d.moveTo(store);
+			droneSlots[d.slot] = d;
+			
+			//Each controller is asked once
+			Integer mask = subscriptionsByController.get(d.getController());
+			if(mask == null){
+				mask = subscriptionMask(d.getController().getSubscribedEvents());
+				subscriptionsByController.put(d.getController(),mask);
+			}
+			subscriptions[d.slot] = mask;
+			ProgressPolicy policy = policiesByController.get(d.getController());
+			if(policy == null){
+				policy = d.getController().getTransitProgressPolicy();
+				if(policy == null){
+					policy = ProgressPolicy.everyTick();
+				}
+				policiesByController.put(d.getController(),policy);
+			}
+			progressPolicies[d.slot] = policy;
+			Integer index = controllerIndex.get(d.getController());
+			if(index == null){
+				index = controllerOrder.size();
+				controllerIndex.put(d.getController(),index);
+				controllerOrder.add(d.getController());
+			}
+			controllerOf[d.slot] = index;
+		}
+		int controllers = controllerOrder.size();
+		this.controllers = new DroneController[controllers];
+		String[] controllerNames = new String[controllers];
+		takesBatches = new boolean[controllers];
+		controllerBatches = new DroneEventBatch[controllers];
+		controllerDecisions = new DroneDecisions[controllers];
+		controllerTurns = new ArrayList<Callable<Void>>();
+		for(int i = 0; i < controllers; i++){
+			DroneController controller = controllerOrder.get(i);
+			this.controllers[i] = controller;
+			controllerNames[i] = controller.getCompanyName();
+			takesBatches[i] = (controller instanceof BatchDroneController);
+			controllerBatches[i] = new DroneEventBatch();
+			controllerDecisions[i] = new DroneDecisions(placeNames);
+			final int turn = i;
+			controllerTurns.add(() -> {
+				DroneDecisions decisions = controllerDecisions[turn];
+				deferred.set(decisions);
+				try {
+					takeTurn(turn,controllerBatches[turn],decisions);
+				}
+				finally{
+					deferred.remove();
+				}
+				return null;
+			});
+		}
+		watchdog = new ControllerWatchdog(controllerNames);
+		schedule = new EventSchedule(this.drones.size(),clockTick);
 	}
 
 
@@ -94,490 +292,1241 @@ public class Simulator {
 		quitting = false;
 		simulationEnded = false;
 		
-		clockTick = -SIMULATION_SPEED;
-		long previousTime;
-		long currentTime = System.currentTimeMillis();
-		
-		//Set up the speed of the simulation
-		long factor = simulationController.simulatorSpeed();
-		if(factor <= 0){
-			factor = 1;
+		//Headless runs go tick to tick as fast as possible
+		if(headless){
+			clock.setMode(ClockMode.MAX_SPEED);
 		}
-		else if (factor > SIMULATION_SPEED){
-			factor = SIMULATION_SPEED;
-		}
-		long waitTime = SIMULATION_SPEED/factor;
+		clock.restart();
+		
+		long wallClockStart = System.nanoTime();
 		
 		//The main loop
-		while(!quitting && !simulationEnded){
-			simulationEnded = true;
-			
-			previousTime = currentTime;
-			currentTime = System.currentTimeMillis();
-			
-			while((currentTime - previousTime) < waitTime){
-				try {
-					Thread.sleep(waitTime - (currentTime-previousTime));
-				} catch (InterruptedException e) {
+		try {
+			while(!quitting && !simulationEnded){
+				int rounds = clock.awaitTicks();
+				for(int i = 0; (i < rounds) && !quitting && !simulationEnded; i++){
+					tick();
 				}
-				currentTime = System.currentTimeMillis();
 			}
-			
-			clockTick += SIMULATION_SPEED;
-			
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			end("Simulation thread interrupted");
+		}
+		
+		setConcurrentControllers(false);
+		
+		wallClockNanos = System.nanoTime() - wallClockStart;
+		if(headless){
+			System.out.println(String.format("Simulated %.1f seconds in %.3f wall seconds (%.1f simulated seconds per wall second)",clockTick/1000.0,wallClockNanos/1.0e9,getSimulatedSecondsPerWallSecond()));
+		}
+	}
+	
+	/**
+	 * Run one round of the simulation.  In event driven mode the clock first jumps to the next tick where
+	 * some drone has something to do.
+	 * @return true if the simulation should keep going
+	 */
+	boolean tick(){
+		simulationEnded = true;
+		
+		clockTick += SIMULATION_SPEED;
+		
+		if(eventDriven){
+			skipToNextEvent();
+		}
+		
+		//Controllers that look at the world all see it as it was before anything happened this round
+		if(snapshotsWanted){
+			takeSnapshot();
+		}
+		
+		Drone[] shuffledDrones = this.shuffledDrones;
+		int visiting;
+		if(eventDriven){
+			visiting = dueDrones(shuffledDrones);
+		}
+		else{
 			//Shuffle drones so that different drones get random priority on each round
 			//Shuffling manually to make sure that we only use a managed random number generator for consistency
-			ArrayList<Drone> shuffledDrones = new ArrayList<Drone>();
-			shuffledDrones.addAll(drones);
-			for(int j = 0 ; j < shuffledDrones.size(); j++){
-				int swapIndex = simulationController.getRandom().nextInt(shuffledDrones.size());
-				Drone foo = shuffledDrones.get(j);
-				shuffledDrones.set(j,shuffledDrones.get(swapIndex));
-				shuffledDrones.set(swapIndex,foo);
+			//Always start from the drones in order so that the shuffle is the same as shuffling a fresh list
+			System.arraycopy(droneSlots,0,shuffledDrones,0,shuffledDrones.length);
+			for(int j = 0 ; j < shuffledDrones.length; j++){
+				int swapIndex = simulationController.getRandom().nextInt(shuffledDrones.length);
+				Drone foo = shuffledDrones[j];
+				shuffledDrones[j] = shuffledDrones[swapIndex];
+				shuffledDrones[swapIndex] = foo;
+			}
+			visiting = shuffledDrones.length;
+		}
+		
+		for(int i = 0; i < visiting; i++){
+			Drone drone = shuffledDrones[i];
+			if(eventDriven){
+				catchUp(drone);
 			}
 			
-			for(Drone drone:shuffledDrones){
-				switch (drone.getState()){
-					case BEGIN:{
-						simulationEnded = false;
-						drone.getController().droneEmbarkingStart(new Drone(drone));
-						drone.setState(DroneState.EMBARKING);
-					}
-					break;
-					case EMBARKING:{
-						simulationEnded = false;
-						//Check to see if the passengers have had enough time to get onboard 
-						if((clockTick - drone.getEmbarkingStart()) > drone.getEmbarkingDuration()){
-							
-							boolean embarkingSome = (drone.getEmbarkers().size() > 0);
-							for(Person person:drone.getEmbarkers()){
-								if(!drone.getEmbarkers().remove(person)){
-									throw new RuntimeException("Whey didn't the person get on board?");
-								}
-								person.setState(PersonState.IN_DRONE);
-								if(!drone.getPassengers().add(person)){
-									throw new RuntimeException("Whey didn't the person get become a passenger?");
-								}
-							}
-							
-							if(embarkingSome){
-								drone.getController().droneEmbarkingAGroupEnd(new Drone(drone));
-							}
-							
-							// If the drone is full then it takes off
-							if(drone.getPassengers().size() == drone.getCapacity()){
-								droneTakeOff(drone);
-							}
-							else if(drone.getPassengers().size() > drone.getCapacity()){
-								throw new IllegalArgumentException("Somehow we overloaded the drone"+drone);
-							}
-							else{
-								//Figure out who is still waiting to board this drone 
-								LinkedList<Person> waiting = new LinkedList<Person>();
-								for(Person person: drone.getStart().getWaitingToEmbark()){
-									if((drone.getManifest().contains(person.getDestination())) || (PEOPLE_ALWAYS_BOARD_DRONE)){
-										waiting.add(person);
-									}
-								}
-								//If no one is waiting then the drone takes off
-								if(waiting.size() == 0){
-									droneTakeOff(drone);
-								}
-								else{
-									// Figure out how many people to load
-									int nextEmbarkGroupSize = drone.getEmbarkingCapacity();
-									int remainingCapacity = drone.getCapacity() - drone.getPassengers().size();
-									if(remainingCapacity < nextEmbarkGroupSize){
-										nextEmbarkGroupSize = remainingCapacity;
-									}
-									if(waiting.size() < nextEmbarkGroupSize){
-										nextEmbarkGroupSize = waiting.size();
-									}
-									if(nextEmbarkGroupSize == 0){
-										throw new IllegalArgumentException("We should have already accounted for all cases where this is 0");
-									}
-									else{
-										drone.setEmbarkingStart(clockTick);
-										for(int i = 0; i < nextEmbarkGroupSize;i++){
-											Person loadMe = waiting.remove();
-											//Remove them from the place
-											if(!drone.getStart().getWaitingToEmbark().remove(loadMe)){
-												throw new RuntimeException("Why didn't the person embark?");
-											}
-											loadMe.setDeliveryCompany(drone.getCompanyName());
-											loadMe.setStartTransitTime(clockTick);
-											loadMe.setState(PersonState.EMBARKING);
-											drone.getEmbarkers().add(loadMe);
-										}
-										drone.getController().droneEmbarkingAGroupStart(new Drone(drone));
-									}
-								}
-							}
-						}
-					}
-					break;
-					case ASCENDING:{
-						simulationEnded = false;
-						long timeToGo = drone.getTransitStart() - clockTick;
-						if(timeToGo > 0){
-							double percentage = timeToGo/(0.0+drone.getAscensionTime());
-							double currentHeight = TRANSIT_HEIGHT - percentage*TRANSIT_HEIGHT;
-							drone.getPosition().setHeight(currentHeight);
+			DroneState before = drone.getState();
+			advanceDrone(drone);
+			if((drone.getState() != before) || isBusy(before)){
+				lastProgressTick = clockTick;
+			}
+			
+			if(eventDriven){
+				scheduleNextEvent(drone);
+			}
+		}
+		deliverBatches();
+		applyCommands();
+		if(watchdog.isEnabled()){
+			watchdog.endRound(clockTick);
+		}
+		
+		//Check to see if all passengers are delivered
+		boolean allDone = (getPersonCount(PersonState.ARRIVED) + getPersonCount(PersonState.DEAD) == people.size());
+		if(allDone){
+			simulationEnded = true;
+			System.out.println("Simulation ended with all passengers delivered at time "+clockTick);
+			setOutcome(SimulationOutcome.FINISHED,"Everyone arrived or died");
+		}
+		else if(simulationEnded){
+			setOutcome(SimulationOutcome.NO_DRONES_LEFT,"Every drone is dead with "+(people.size()-getPersonCount(PersonState.ARRIVED)-getPersonCount(PersonState.DEAD))+" people still to deliver");
+		}
+		else if((stallTimeout > 0) && ((clockTick - lastProgressTick) >= stallTimeout)){
+			simulationEnded = true;
+			setOutcome(SimulationOutcome.STALLED,"No progress between "+lastProgressTick+" and "+clockTick+": no drone was busy, no drone or person changed state and no controller changed a route or manifest, "+getPersonCount(PersonState.WAITING)+" people are still waiting");
+			System.out.println("Simulation stalled");
+			System.out.println("\t"+outcomeReason);
+		}
+		return !simulationEnded;
+	}
+	
+	/**
+	 * In event driven mode, jump the clock over the rounds in which no drone has anything to do.
+	 * A round's shuffle only depends on the round, so the jump draws nothing however many rounds it skips.
+	 */
+	private void skipToNextEvent(){
+		long nextEvent = schedule.peekTick();
+		if((nextEvent == Long.MAX_VALUE) || (clockTick >= nextEvent)){
+			return;
+		}
+		long rounds = (nextEvent - clockTick + SIMULATION_SPEED - 1)/SIMULATION_SPEED;
+		clockTick += rounds*SIMULATION_SPEED;
+	}
+	
+	/**
+	 * In event driven mode, put the drones that have something to do this round into drones, in their own shuffled
+	 * order.  A drone woken part way through the round is visited on the next one.
+	 * @return how many there are
+	 */
+	private int dueDrones(Drone[] drones){
+		int due = schedule.due(clockTick,dueSlots);
+		//The heap's layout isn't part of the shuffle
+		Arrays.sort(dueSlots,0,due);
+		int living = store.size() - store.count(DroneState.DEAD);
+		int busy = living - store.count(DroneState.IDLING) - store.count(null);
+		for(int i = 0; i < due; i++){
+			Drone drone = droneSlots[dueSlots[i]];
+			drones[i] = drone;
+			if(drone.getState() != DroneState.DEAD){
+				living--;
+			}
+			if(isBusy(drone.getState())){
+				busy--;
+			}
+		}
+		//Sleeping drones keep the simulation alive but don't do anything this round
+		if(living > 0){
+			simulationEnded = false;
+		}
+		if(busy > 0){
+			lastProgressTick = clockTick;
+		}
+		Random shuffle = shuffleFor(clockTick);
+		for(int j = 0 ; j < due; j++){
+			int swapIndex = shuffle.nextInt(due);
+			Drone foo = drones[j];
+			drones[j] = drones[swapIndex];
+			drones[swapIndex] = foo;
+		}
+		return due;
+	}
+	
+	/**
+	 * @return the random numbers for shuffling the drones in the round at this tick, the same ones every time
+	 */
+	private Random shuffleFor(long tick){
+		if(!shuffleSeeded){
+			shuffleSeed = simulationController.getRandom().nextLong();
+			shuffleSeeded = true;
+		}
+		//Random starts out alike for seeds that are close together, so mix the round in thoroughly
+		long z = shuffleSeed + tick*0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30))*0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27))*0x94D049BB133111EBL;
+		shuffleRandom.setSeed(z ^ (z >>> 31));
+		return shuffleRandom;
+	}
+	
+	/**
+	 * Replay the rounds that an event driven drone slept through.  Those rounds only move a drone
+	 * up or down and charge it, so they are applied here without any call backs.
+	 * @param drone
+	 */
+	private void catchUp(Drone drone){
+		long lastAdvanced = schedule.getLastAdvancedTick(drone.slot);
+		long previousTick = clockTick - SIMULATION_SPEED;
+		if(previousTick <= lastAdvanced){
+			return;
+		}
+		switch (drone.getState()){
+			case ASCENDING:{
+				if(drone.getTransitStart() - previousTick > 0){
+					drone.setHeight(ascendingHeight(drone,previousTick));
+				}
+			}
+			break;
+			case DESCENDING:
+			case EXPLODING:{
+				if(drone.getTransitEnd() - previousTick > 0){
+					drone.setHeight(descendingHeight(drone,previousTick));
+				}
+			}
+			break;
+			default:
+				break;
+		}
+		schedule.setLastAdvancedTick(drone.slot,previousTick);
+	}
+	
+	/**
+	 * Work out the next round in which this drone does something other than wait
+	 * @param drone
+	 */
+	private void scheduleNextEvent(Drone drone){
+		long nextTick = clockTick + SIMULATION_SPEED;
+		long eventTick;
+		switch (drone.getState()){
+			case EMBARKING:
+				eventTick = firstTickAfter(drone.getEmbarkingStart() + drone.getEmbarkingDuration());
+				break;
+			case DISEMBARKING:
+				eventTick = firstTickAfter(drone.getDisembarkingStart() + drone.getDisembarkingDuration());
+				break;
+			case ASCENDING:
+				eventTick = firstTickAfter(drone.getTransitStart() - 1);
+				break;
+			case DESCENDING:
+			case EXPLODING:
+				eventTick = firstTickAfter(drone.getTransitEnd() - 1);
+				break;
+			case RECHARGING:
+				if(store.start[drone.slot] == store.destination[drone.slot]){
+					eventTick = nextRechargingEvent(drone);
+				}
+				else{
+					eventTick = nextTick;
+				}
+				break;
+			case DEAD:
+				eventTick = Long.MAX_VALUE;
+				break;
+			default:
+				//Everything else calls back to the controller or moves on every round
+				eventTick = nextTick;
+				break;
+		}
+		schedule.schedule(drone.slot,Math.max(nextTick,eventTick));
+		schedule.setLastAdvancedTick(drone.slot,clockTick);
+	}
+	
+	/**
+	 * @return the next round in which a recharging drone finishes or crosses a notification break
+	 */
+	private long nextRechargingEvent(Drone drone){
+		int slot = drone.slot;
+		if(store.rechargeStart[slot] == DroneStore.NOT_CHARGING){
+			startRecharge(drone,clockTick);
+		}
+		long after = (clockTick - store.rechargeStart[slot])/SIMULATION_SPEED;
+		//Fully charged is strictly more than 1.0, the breaks are reached when the charge gets to them
+		long next = firstRechargeRound(drone,after,1.0,true);
+		for(int i = 0; i < RECHARGE_BREAKS.length; i++){
+			if(rechargeCharge(drone,after) < RECHARGE_BREAKS[i]){
+				next = Math.min(next,firstRechargeRound(drone,after,RECHARGE_BREAKS[i],false));
+			}
+		}
+		return store.rechargeStart[slot] + next*SIMULATION_SPEED;
+	}
+	
+	/**
+	 * @return the first round of charging after the given one that takes the charge to level, or past it if strictly
+	 */
+	private long firstRechargeRound(Drone drone,long after,double level,boolean strictly){
+		double chargeDelta = store.rechargePerTick[drone.slot];
+		if(chargeDelta <= 0){
+			return Long.MAX_VALUE/(2*SIMULATION_SPEED);
+		}
+		long round = Math.max(after + 1,(long) Math.ceil((level - store.rechargeCharge[drone.slot])/chargeDelta));
+		//Rounding can put the estimate a round either side
+		while((round > after + 1) && rechargeReaches(drone,round - 1,level,strictly)){
+			round--;
+		}
+		while(!rechargeReaches(drone,round,level,strictly)){
+			round++;
+		}
+		return round;
+	}
+	
+	private boolean rechargeReaches(Drone drone,long round,double level,boolean strictly){
+		if(strictly){
+			return rechargeCharge(drone,round) > level;
+		}
+		return rechargeCharge(drone,round) >= level;
+	}
+	
+	/**
+	 * @return the charge of a recharging drone after this many rounds on the charger
+	 */
+	private double rechargeCharge(Drone drone,long rounds){
+		return store.rechargeCharge[drone.slot] + rounds*store.rechargePerTick[drone.slot];
+	}
+	
+	/**
+	 * Remember when the drone went on the charger and how charged it was then, everything else is worked out from that
+	 */
+	private void startRecharge(Drone drone,long tick){
+		store.rechargeCharge[drone.slot] = drone.getCharge();
+		store.rechargePerTick[drone.slot] = (SIMULATION_SPEED/1000.0) * drone.getRechargeRate();
+		store.rechargeStart[drone.slot] = tick;
+	}
+	
+	/**
+	 * @return the first round that happens strictly after time
+	 */
+	private static long firstTickAfter(long time){
+		return Math.floorDiv(time,SIMULATION_SPEED)*SIMULATION_SPEED + SIMULATION_SPEED;
+	}
+	
+	private double ascendingHeight(Drone drone, long tick){
+		long timeToGo = store.transitStart[drone.slot] - tick;
+		double percentage = timeToGo/(0.0+drone.getAscensionTime());
+		return TRANSIT_HEIGHT - percentage*TRANSIT_HEIGHT;
+	}
+	
+	private double descendingHeight(Drone drone, long tick){
+		long timeToGo = store.transitEnd[drone.slot] - tick;
+		double percentage = timeToGo/(0.0+drone.getDescensionTime());
+		return percentage*TRANSIT_HEIGHT;
+	}
+	
+	/**
+	 * @return true if going from one charge to the other passes one of the 10% marks that the controller is told about
+	 */
+	private static boolean crossesRechargeBreak(double before, double after){
+		boolean alert = false;
+		for(int i = 0; i < RECHARGE_BREAKS.length; i++){
+			if((before < RECHARGE_BREAKS[i]) && (after >= RECHARGE_BREAKS[i])){
+				alert = true;
+			}
+		}
+		return alert;
+	}
+	
+	/**
+	 * @return the drone's movement for this round, good until the next drone's is worked out
+	 */
+	private DroneStep stepFor(Drone drone){
+		computeStep(drone,step);
+		return step;
+	}
+	
+	/**
+	 * Work out how a drone moves and charges this round without changing anything.  Nothing is decided here that
+	 * depends on other drones, people or the controllers.
+	 * @param drone
+	 * @param step where the answer goes
+	 */
+	private void computeStep(Drone drone,DroneStep step){
+		int slot = drone.slot;
+		switch (store.getState(slot)){
+			case ASCENDING:{
+				step.height = ascendingHeight(drone,clockTick);
+			}
+			break;
+			case DESCENDING:
+			case EXPLODING:{
+				step.height = descendingHeight(drone,clockTick);
+			}
+			break;
+			case IN_TRANSIT:{
+				computeTransitStep(drone,step);
+			}
+			break;
+			case RECHARGING:{
+				//Put on the charger by something other than landing
+				if(store.rechargeStart[slot] == DroneStore.NOT_CHARGING){
+					startRecharge(drone,clockTick - SIMULATION_SPEED);
+				}
+				long ticks = (clockTick - store.rechargeStart[slot])/SIMULATION_SPEED;
+				step.ticks = ticks;
+				step.charge = rechargeCharge(drone,ticks);
+				step.fullyCharged = (step.charge > 1.0);
+				step.alert = crossesRechargeBreak(rechargeCharge(drone,ticks - 1),step.charge);
+			}
+			break;
+			default:
+				break;
+		}
+	}
+	
+	/**
+	 * A drone in transit flies a straight leg that is worked out when it starts the leg, so each round only
+	 * needs to know how many rounds it has been flying.  Its position is only filled in when someone reads it.
+	 */
+	private void computeTransitStep(Drone drone,DroneStep step){
+		int slot = drone.slot;
+		//Launched or rerouted since the leg was worked out
+		if(store.legDestination[slot] != store.destination[slot]){
+			planLeg(drone);
+		}
+		long ticks = (clockTick - store.legStart[slot])/SIMULATION_SPEED;
+		step.ticks = ticks;
+		
+		//Deduct charge
+		step.charge = legCharge(drone,ticks);
+		step.outOfCharge = (clockTick >= store.legEmpty[slot]);
+		if(step.outOfCharge){
+			step.charge = 0.0;
+		}
+		
+		//Close enough to call it an arrival
+		step.arrived = (clockTick >= store.legArrival[slot]);
+		
+		//How far along the leg the drone was at the start of this round
+		step.progress = Math.min(1.0,(ticks-1)*store.legFraction[slot]);
+	}
+	
+	/**
+	 * Work out the leg from where the drone is to its destination: when it gets there and when, if ever, it
+	 * runs out of charge.  The leg starts at the end of the last round.  A drone that has just finished
+	 * ascending starts from above its starting place, a rerouted drone from wherever it is.
+	 */
+	private void planLeg(Drone drone){
+		int slot = drone.slot;
+		int destination = store.destination[slot];
+		double latitude;
+		double longitude;
+		double height;
+		if(store.legDestination[slot] == DroneStore.NO_LEG){
+			int start = store.start[slot];
+			latitude = store.placeLatitude[start];
+			longitude = store.placeLongitude[start];
+			height = store.placeHeight[start] + TRANSIT_HEIGHT;
+		}
+		else{
+			Position position = drone.getPosition();
+			latitude = position.getLatitude();
+			longitude = position.getLongitude();
+			height = position.getHeight();
+		}
+		store.legLatitude[slot] = latitude;
+		store.legLongitude[slot] = longitude;
+		store.legHeight[slot] = height;
+		store.legTargetHeight[slot] = store.placeHeight[destination] + TRANSIT_HEIGHT;
+		store.legDestination[slot] = destination;
+		store.legStart[slot] = clockTick - SIMULATION_SPEED;
+		store.legCharge[slot] = store.charge[slot];
+		
+		double metersForTrip = DistanceCalculator.distance(latitude,longitude,store.placeLatitude[destination],store.placeLongitude[destination]);
+		double metersPerTick = drone.getSpeed() *(SIMULATION_SPEED /1000.0);
+		
+		//The drone arrives on the first round that starts within one round's flight of the destination
+		long ticksToArrive = 1;
+		if(metersForTrip > 0){
+			store.legFraction[slot] = metersPerTick/metersForTrip;
+			ticksToArrive = Math.max(1,(long) Math.ceil(metersForTrip/metersPerTick));
+		}
+		else{
+			store.legFraction[slot] = 1.0;
+		}
+		store.legArrival[slot] = store.legStart[slot] + ticksToArrive*SIMULATION_SPEED;
+		
+		//The first round that leaves the charge below zero
+		double chargePerTick = metersPerTick*drone.getDischargeRate();
+		if(chargePerTick <= 0){
+			store.legEmpty[slot] = Long.MAX_VALUE;
+		}
+		else{
+			long ticksToEmpty = (long) Math.floor(store.legCharge[slot]/chargePerTick) + 1;
+			while((ticksToEmpty > 1) && (legCharge(drone,ticksToEmpty-1) < 0.0)){
+				ticksToEmpty--;
+			}
+			while(legCharge(drone,ticksToEmpty) >= 0.0){
+				ticksToEmpty++;
+			}
+			store.legEmpty[slot] = store.legStart[slot] + ticksToEmpty*SIMULATION_SPEED;
+		}
+	}
+	
+	/**
+	 * @return the drone's charge after flying this many rounds of its current leg
+	 */
+	private double legCharge(Drone drone,long ticks){
+		double metersPerTick = drone.getSpeed() *(SIMULATION_SPEED /1000.0);
+		return store.legCharge[drone.slot] - ticks*(metersPerTick*drone.getDischargeRate());
+	}
+	
+	/**
+	 * Move the drone through one tick of its life cycle
+	 * @param drone
+	 */
+	private void advanceDrone(Drone drone){
+
+		switch (drone.getState()){
+			case BEGIN:{
+				simulationEnded = false;
+				callBack(drone,DroneEvent.EMBARKING_START,0.0);
+				drone.setState(DroneState.EMBARKING);
+			}
+			break;
+			case EMBARKING:{
+				simulationEnded = false;
+				//Check to see if the passengers have had enough time to get onboard 
+				if((clockTick - drone.getEmbarkingStart()) > drone.getEmbarkingDuration()){
+					
+					boolean embarkingSome = (drone.getEmbarkers().size() > 0);
+					for(Person person:drone.getEmbarkers()){
+						if(!drone.getEmbarkers().remove(person)){
+							throw new RuntimeException("Whey didn't the person get on board?");
 						}
-						else{
-							drone.getController().droneAscendingEnd(new Drone(drone));
-							drone.setState(DroneState.IN_TRANSIT);
-							drone.getController().droneTransitingStart(new Drone(drone));
+						setPersonState(person,PersonState.IN_DRONE);
+						if(!drone.getPassengers().add(person)){
+							throw new RuntimeException("Whey didn't the person get become a passenger?");
 						}
 					}
-					break;
-					case EXPLODING:{
-						simulationEnded = false;
-						
-						for(Person p: drone.getPassengers()){
-							p.setState(PersonState.DYING);
-						}
-						
-						long timeToGo = drone.getTransitEnd() - clockTick;
-						if(timeToGo > 0){
-							double percentage = timeToGo/(0.0+drone.getDescensionTime());
-							double currentHeight = percentage*TRANSIT_HEIGHT;
-							drone.getPosition().setHeight(currentHeight);
-						}
-						else{
-							drone.setState(DroneState.DYING);
-						}
+					
+					if(embarkingSome){
+						callBack(drone,DroneEvent.EMBARKING_A_GROUP_END,0.0);
 					}
-					break;
-					case IN_TRANSIT:{
-						simulationEnded = false;
-						//How far the drone has to go from it's current position to it's destination
-						double metersToGoal = DistanceCalculator.distance(drone.getPosition().getLatitude(),drone.getPosition().getLongitude(),drone.getDestination().getPosition().getLatitude(),drone.getDestination().getPosition().getLongitude());
-						//How far the drone had to go from it's original destination at launch to it's current destination (It's destination might have changed)
-						double metersForTrip = DistanceCalculator.distance(drone.getStart().getPosition().getLatitude(),drone.getStart().getPosition().getLongitude(),drone.getDestination().getPosition().getLatitude(),drone.getDestination().getPosition().getLongitude());
-						if(metersToGoal <= 0){
-							metersToGoal = 1;
-						}
-						double speed = drone.getSpeed();
-						
-						//How long it should take for the drone to get to the destination
-						//double totalTimeInSeconds = metersToGoal/speed;
-						//double totalTimeInMilliSeconds = totalTimeInSeconds *1000;
 					
-						//Time since the drone started this transit (it may have been redirected enroute)
-						//double start = drone.getTransitStart();
-						//double duration = clockTick - start;
-						
-						//Move the drone forward 
-						double metersPerTick = speed *(SIMULATION_SPEED /1000.0);
-						
-						//Deduct charge
-						double charge = drone.getCharge();
-						//Percent per meter
-						double dischargeRate = drone.getDischargeRate();
-						charge = charge - (metersPerTick*dischargeRate); 
-						if(charge < 0.0 ){
-							charge = 0.0;
-							drone.setCharge(charge);
-							if(DRONES_RUN_OUT_OF_CHARGE){
-								drone.setState(DroneState.EXPLODING);
-								drone.setTransitEnd(clockTick+(drone.getDescensionTime()/2));
-								drone.getController().droneExploding(new Drone(drone));
-							}
+					// If the drone is full then it takes off
+					if(drone.getPassengers().size() == drone.getCapacity()){
+						droneTakeOff(drone);
+					}
+					else if(drone.getPassengers().size() > drone.getCapacity()){
+						throw new IllegalArgumentException("Somehow we overloaded the drone"+drone);
+					}
+					else{
+						//Figure out if anyone is still waiting to board this drone, only the queues for the places on
+						//the manifest are looked at
+						Manifest boarding = PEOPLE_ALWAYS_BOARD_DRONE ? null : drone.peekManifest();
+						WaitingList queue = drone.getStart().peekWaiting();
+						//If no one is waiting then the drone takes off
+						if(!queue.anyGoingTo(boarding)){
+							droneTakeOff(drone);
 						}
 						else{
-							drone.setCharge(charge);
-						
-							//What percentage of the way there are we?
-							double percentage = 1.0 - ((metersToGoal-metersPerTick)/metersForTrip);
-							if(percentage > 1.0){
-								//This could happen if the drone was rerouted in transit to a further destination
-								percentage = 1.0; 
-								
+							// Figure out how many people to load
+							int nextEmbarkGroupSize = drone.getEmbarkingCapacity();
+							int remainingCapacity = drone.getCapacity() - drone.getPassengers().size();
+							if(remainingCapacity < nextEmbarkGroupSize){
+								nextEmbarkGroupSize = remainingCapacity;
 							}
-						
-							//Close enough to call it an arrival
-							if(metersPerTick >= metersToGoal){
-								drone.getPosition().setLatitude(drone.getDestination().getPosition().getLatitude());
-								drone.getPosition().setLongitude(drone.getDestination().getPosition().getLongitude());
-								drone.getPosition().setHeight(TRANSIT_HEIGHT+drone.getDestination().getPosition().getHeight());
-							
-								//Arrival
-								drone.setTransitEnd(clockTick+drone.getDescensionTime());
-								drone.getController().droneTransitingEnd(new Drone(drone));
-								drone.setState(DroneState.DESCENDING);
-								drone.getController().droneDescendingStart(new Drone(drone));
+							if(nextEmbarkGroupSize == 0){
+								throw new IllegalArgumentException("We should have already accounted for all cases where this is 0");
 							}
 							else{
-								// This is going to screw up if a drone is rerouted in transit because it needs to interpolate between the drone's
-								// current position and the destination, not the drone's starting point
-								Position a = drone.getStart().getPosition();
-								Position b = drone.getDestination().getPosition();
-								double latitude = (b.getLatitude()-a.getLatitude())*percentage+a.getLatitude();
-								double longitude = (b.getLongitude()-a.getLongitude())*percentage+a.getLongitude();
-								double height = (b.getHeight()-a.getHeight())*percentage+a.getHeight() + TRANSIT_HEIGHT;
-						
-								drone.getPosition().setLatitude(latitude);
-								drone.getPosition().setLongitude(longitude);
-								drone.getPosition().setHeight(height);
-							}
-							if(drone.getEmbarkers().size() != 0){
-								throw new IllegalStateException("Simulator Error:There shouldn't be anyone embarking if we are in transit");
-							}
-							if(drone.getDisembarkers().size() != 0){
-								throw new IllegalStateException("Simulator Error:There shouldn't be anyone disembarking if we are in transit");
-							}
-							for(Person p: drone.getPassengers()){
-								p.setPosition(drone.getPosition());
+								drone.setEmbarkingStart(clockTick);
+								//Remove them from the place, those who have waited longest first
+								waiting.clear();
+								queue.take(boarding,nextEmbarkGroupSize,waiting);
+								for(int i = 0; i < waiting.size();i++){
+									Person loadMe = waiting.get(i);
+									loadMe.setDeliveryCompany(drone.getCompanyName());
+									loadMe.setStartTransitTime(clockTick);
+									setPersonState(loadMe,PersonState.EMBARKING);
+									drone.getEmbarkers().add(loadMe);
+								}
+								callBack(drone,DroneEvent.EMBARKING_A_GROUP_START,0.0);
 							}
-						
-							/* Call back to controller */
-							drone.getController().droneTransiting(new Drone(drone), 1.0-(metersToGoal/metersForTrip));
 						}
 					}
-					break;
-					case DESCENDING:{
-						simulationEnded = false;
-						long timeToGo = drone.getTransitEnd() - clockTick;
-						if(timeToGo > 0){
-							double percentage = timeToGo/(0.0+drone.getDescensionTime());
-							double currentHeight = percentage*TRANSIT_HEIGHT;
-							drone.getPosition().setHeight(currentHeight);
-						}
-						else{
-							droneLand(drone);
-						}
+				}
+			}
+			break;
+			case ASCENDING:{
+				simulationEnded = false;
+				long timeToGo = drone.getTransitStart() - clockTick;
+				if(timeToGo > 0){
+					drone.setHeight(stepFor(drone).height);
+				}
+				else{
+					callBack(drone,DroneEvent.ASCENDING_END,0.0);
+					drone.setState(DroneState.IN_TRANSIT);
+					store.legDestination[drone.slot] = DroneStore.NO_LEG;
+					//Passengers are wherever the drone is for the whole flight
+					for(Person p: drone.getPassengers()){
+						p.setCarrier(drone);
 					}
-					break;
-					case DISEMBARKING:{
-						simulationEnded = false;
-						//If we are done with the last set of disembarkers
-						if((clockTick - drone.getDisembarkingStart()) > drone.getDisembarkingDuration()){
-							boolean disembarkingSome = (drone.getDisembarkers().size() > 0);
-							for(Person person:drone.getDisembarkers()){
-								drone.getDisembarkers().remove(person);
-								person.setState(PersonState.ARRIVED);
-								person.setEndTransitTime(clockTick);
-								person.setPosition(new Position(drone.getDestination().getPosition()));
-								//Do something with person after they arrived
-								//drone.getDestination().getWaitingToEmbark().add(person);
-							}
-							if(disembarkingSome){
-								drone.getController().droneDisembarkingGroupEnd(new Drone(drone));
-							}
-							//Find all the people who still want to disembark
-							LinkedList<Person> waiting = new LinkedList<Person>();
-							for(Person person:drone.getPassengers()){
-								if((person.getDestination().equals(drone.getDestination().getName())) || (PEOPLE_ALWAYS_DISEMBARK_DRONE)){
-									waiting.add(person);
-								}
-							}
-							if(waiting.size() == 0){
-								droneStartRecharging(drone);
-							}
-							else{
-								// Figure out how many people to unload
-								int nextDisembarkGroupSize = drone.getDisembarkingCapacity();
-								if(waiting.size() < nextDisembarkGroupSize){
-									nextDisembarkGroupSize = waiting.size();
-								}
-								if(nextDisembarkGroupSize == 0){
-									throw new IllegalArgumentException("We should have already accounted for all cases where this is 0");
-								}
-								else{
-									for(int i =0; i< nextDisembarkGroupSize; i++){
-										Person person = waiting.remove();
-										/*
-										Person p = drone.getPassengers().iterator().next();
-										System.out.println(p.toString());
-											System.out.println("\t\t"+p.hashCode());
-										System.out.println(person.toString());
-											System.out.println("\t\t"+person.hashCode());
-										if(person.equals(p)){
-											System.out.println("They are equal");
-										}
-										else{
-											System.out.println("They are not equal");
-										}
-										Set<Person> passengers = drone.getPassengers();
-										for(Person p2: passengers){
-											System.out.println("\t"+p2.toString());
-											System.out.println("\t\t"+p2.hashCode());
-										}
-										*/
-										if(!drone.getPassengers().remove(person)){
-											throw new RuntimeException("Why didn't the person get removed?");
-										}
-										person.setState(PersonState.DISEMBARKING);
-										drone.getDisembarkers().add(person);
-									}
-									drone.getController().droneDisembarkingGroupStart(new Drone(drone));
-									drone.setDisembarkingStart(clockTick);
-								}
-							}
+					lastProgressCallTick[drone.slot] = clockTick;
+					lastProgressCall[drone.slot] = 0.0;
+					callBack(drone,DroneEvent.TRANSITING_START,0.0);
+				}
+			}
+			break;
+			case EXPLODING:{
+				simulationEnded = false;
+				
+				for(Person p: drone.getPassengers()){
+					setPersonState(p,PersonState.DYING);
+				}
+				
+				long timeToGo = drone.getTransitEnd() - clockTick;
+				if(timeToGo > 0){
+					drone.setHeight(stepFor(drone).height);
+				}
+				else{
+					drone.setState(DroneState.DYING);
+				}
+			}
+			break;
+			case IN_TRANSIT:{
+				simulationEnded = false;
+				DroneStep step = stepFor(drone);
+				
+				drone.setCharge(step.charge);
+				if(step.outOfCharge){
+					if(DRONES_RUN_OUT_OF_CHARGE){
+						drone.setState(DroneState.EXPLODING);
+						drone.setTransitEnd(clockTick+(drone.getDescensionTime()/2));
+						callBack(drone,DroneEvent.EXPLODING,0.0);
+					}
+				}
+				else{
+					//Close enough to call it an arrival
+					if(step.arrived){
+						int destination = store.destination[drone.slot];
+						drone.setLocation(store.placeLatitude[destination],store.placeLongitude[destination],TRANSIT_HEIGHT+store.placeHeight[destination]);
+					
+						//Arrival
+						drone.setTransitEnd(clockTick+drone.getDescensionTime());
+						callBack(drone,DroneEvent.TRANSITING_END,0.0);
+						drone.setState(DroneState.DESCENDING);
+						callBack(drone,DroneEvent.DESCENDING_START,0.0);
+					}
+					else{
+						//Worked out if someone looks
+						store.positionTicks[drone.slot] = step.ticks;
+					}
+					if(drone.getEmbarkers().size() != 0){
+						throw new IllegalStateException("Simulator Error:There shouldn't be anyone embarking if we are in transit");
+					}
+					if(drone.getDisembarkers().size() != 0){
+						throw new IllegalStateException("Simulator Error:There shouldn't be anyone disembarking if we are in transit");
+					}
+				
+					/* Call back to controller */
+					callBack(drone,DroneEvent.TRANSITING,step.progress);
+				}
+			}
+			break;
+			case DESCENDING:{
+				simulationEnded = false;
+				long timeToGo = drone.getTransitEnd() - clockTick;
+				if(timeToGo > 0){
+					drone.setHeight(stepFor(drone).height);
+				}
+				else{
+					droneLand(drone);
+				}
+			}
+			break;
+			case DISEMBARKING:{
+				simulationEnded = false;
+				//If we are done with the last set of disembarkers
+				if((clockTick - drone.getDisembarkingStart()) > drone.getDisembarkingDuration()){
+					boolean disembarkingSome = (drone.getDisembarkers().size() > 0);
+					for(Person person:drone.getDisembarkers()){
+						drone.getDisembarkers().remove(person);
+						setPersonState(person,PersonState.ARRIVED);
+						person.setEndTransitTime(clockTick);
+						person.setPosition(new Position(drone.getDestination().getPosition()));
+						//Do something with person after they arrived
+						//drone.getDestination().getWaitingToEmbark().add(person);
+					}
+					if(disembarkingSome){
+						callBack(drone,DroneEvent.DISEMBARKING_GROUP_END,0.0);
+					}
+					//Find all the people who still want to disembark
+					waiting.clear();
+					for(Person person:drone.getPassengers()){
+						if((person.getDestination().equals(drone.getDestination().getName())) || (PEOPLE_ALWAYS_DISEMBARK_DRONE)){
+							waiting.add(person);
 						}
 					}
-					break;
-					case RECHARGING:{
-						simulationEnded = false;
-						
-						//If the controller has told the drone to leave
-						if(!drone.getStart().equals(drone.getDestination())){
-							drone.getController().droneDoneRecharging(new Drone(drone));
-							drone.setState(DroneState.BEGIN);
+					if(waiting.size() == 0){
+						droneStartRecharging(drone);
+					}
+					else{
+						// Figure out how many people to unload
+						int nextDisembarkGroupSize = drone.getDisembarkingCapacity();
+						if(waiting.size() < nextDisembarkGroupSize){
+							nextDisembarkGroupSize = waiting.size();
+						}
+						if(nextDisembarkGroupSize == 0){
+							throw new IllegalArgumentException("We should have already accounted for all cases where this is 0");
 						}
 						else{
-							double chargeDelta = (SIMULATION_SPEED/1000.0) * drone.getRechargeRate() ;
-							if(drone.getCharge()+ chargeDelta > 1.0){
-								drone.setCharge(1.0);
-								drone.getController().droneDoneRecharging(new Drone(drone));
-								drone.setState(DroneState.IDLING);
-							}
-							else{
-								boolean alert = false;
-								double[] breaks = {0.1,0.2,0.3,0.4,0.5,0.6,0.7,0.8,0.9,1.0};
-								for(int i = 0; i < breaks.length; i++){
-									if((drone.getCharge() < breaks[i]) && ((drone.getCharge()+chargeDelta) >= breaks[i])){
-										alert = true;
-									}
+							for(int i =0; i< nextDisembarkGroupSize; i++){
+								Person person = waiting.get(i);
+								/*
+								Person p = drone.getPassengers().iterator().next();
+								System.out.println(p.toString());
+									System.out.println("\t\t"+p.hashCode());
+								System.out.println(person.toString());
+									System.out.println("\t\t"+person.hashCode());
+								if(person.equals(p)){
+									System.out.println("They are equal");
+								}
+								else{
+									System.out.println("They are not equal");
+								}
+								Set<Person> passengers = drone.getPassengers();
+								for(Person p2: passengers){
+									System.out.println("\t"+p2.toString());
+									System.out.println("\t\t"+p2.hashCode());
 								}
-								drone.setCharge(drone.getCharge()+chargeDelta);
-								if(alert){
-									drone.getController().droneRecharging(new Drone(drone),drone.getCharge());
+								*/
+								if(!drone.getPassengers().remove(person)){
+									throw new RuntimeException("Why didn't the person get removed?");
 								}
+								setPersonState(person,PersonState.DISEMBARKING);
+								drone.getDisembarkers().add(person);
 							}
+							callBack(drone,DroneEvent.DISEMBARKING_GROUP_START,0.0);
+							drone.setDisembarkingStart(clockTick);
 						}
 					}
-					break;
-					case IDLING:{
-						simulationEnded = false;
-						
-						for(Person p: drone.getPassengers()){
-							p.setState(PersonState.IN_DRONE);
-						}
-						
-						if(!drone.getStart().equals(drone.getDestination())){
-							drone.setState(DroneState.BEGIN);
-						}
-						else{
-							drone.getController().droneIdling(new Drone(drone));
-						}
+				}
+			}
+			break;
+			case RECHARGING:{
+				simulationEnded = false;
+				
+				//If the controller has told the drone to leave
+				if(store.start[drone.slot] != store.destination[drone.slot]){
+					//Charged for every round up to this one
+					DroneStep step = stepFor(drone);
+					drone.setCharge(rechargeCharge(drone,step.ticks - 1));
+					store.rechargeStart[drone.slot] = DroneStore.NOT_CHARGING;
+					callBack(drone,DroneEvent.DONE_RECHARGING,0.0);
+					drone.setState(DroneState.BEGIN);
+				}
+				else{
+					DroneStep step = stepFor(drone);
+					if(step.fullyCharged){
+						drone.setCharge(1.0);
+						store.rechargeStart[drone.slot] = DroneStore.NOT_CHARGING;
+						callBack(drone,DroneEvent.DONE_RECHARGING,0.0);
+						drone.setState(DroneState.IDLING);
 					}
-					break;
-					case DYING:{
-						simulationEnded = false;
-						for(Person p: drone.getPassengers()){
-							p.setState(PersonState.DEAD);
+					else{
+						//Worked out if someone looks
+						store.chargeTicks[drone.slot] = step.ticks;
+						if(step.alert){
+							callBack(drone,DroneEvent.RECHARGING,drone.getCharge());
 						}
-						drone.setState(DroneState.DEAD);
-					}
-					break;
-					case DEAD:{
-						//simulationEnded = false;
-						//If all drones explode the simulation is ended
 					}
-					break;
-					default:
-						throw new IllegalArgumentException("Unhandled Drone State: "+drone.getState());
 				}
 			}
-			//Check to see if all passengers are delivered
-			boolean allDone = true;
-			for(Person p: people){
-				if(!p.getState().equals(PersonState.ARRIVED)&&(!p.getState().equals(PersonState.DEAD))){
-					allDone = false;
-				}
+			break;
+			case IDLING:{
+				simulationEnded = false;
+				
+				for(Person p: drone.getPassengers()){
+					setPersonState(p,PersonState.IN_DRONE);
+				}
+				
+				if(store.start[drone.slot] != store.destination[drone.slot]){
+					drone.setState(DroneState.BEGIN);
+				}
+				else{
+					callBack(drone,DroneEvent.IDLING,0.0);
+				}
+			}
+			break;
+			case DYING:{
+				simulationEnded = false;
+				for(Person p: drone.getPassengers()){
+					setPersonState(p,PersonState.DEAD);
+				}
+				drone.setState(DroneState.DEAD);
+			}
+			break;
+			case DEAD:{
+				//simulationEnded = false;
+				//If all drones explode the simulation is ended
+			}
+			break;
+			default:
+				throw new IllegalArgumentException("Unhandled Drone State: "+drone.getState());
+		}
+	}
+	
+	/**
+	 * Every change to a person's state goes through here so that the counts stay up to date 
+	 */
+	private void setPersonState(Person person, PersonState state){
+		if(person.getState() != state){
+			lastProgressTick = clockTick;
+		}
+		if(person.getState() != null){
+			personCounts[person.getState().ordinal()]--;
+		}
+		personCounts[state.ordinal()]++;
+		person.setState(state);
+	}
+	
+	/**
+	 * This is kept up to date as people change state so it is cheap to call every frame
+	 * @param state
+	 * @return how many people are in the given state right now
+	 */
+	public int getPersonCount(PersonState state){
+		return personCounts[state.ordinal()];
+	}
+	
+	/**
+	 * @param event
+	 * @return how many call backs for this event weren't made because the controller didn't subscribe to it
+	 */
+	public long getSkippedCallbacks(DroneEvent event){
+		return skippedCallbacks[event.ordinal()];
+	}
+	
+	/**
+	 * @return how many call backs weren't made because the controllers didn't subscribe to them
+	 */
+	public long getSkippedCallbacks(){
+		long total = 0;
+		for(long skipped: skippedCallbacks){
+			total += skipped;
+		}
+		return total;
+	}
+	
+	public void end(String reason){
+		System.out.println("Simulation ending");
+		if(reason != null){
+			System.out.println("\t"+reason);
+		}
+		setOutcome(SimulationOutcome.QUIT,reason);
+		quitting = true;
+		clock.stop();
+	}
+	
+	private void setOutcome(SimulationOutcome outcome,String reason){
+		if(this.outcome == SimulationOutcome.RUNNING){
+			this.outcome = outcome;
+			this.outcomeReason = reason;
+		}
+	}
+	
+	/**
+	 * @return how the run ended, RUNNING if it hasn't
+	 */
+	public SimulationOutcome getOutcome(){
+		return outcome;
+	}
+	
+	/**
+	 * @return why the run ended, null if it hasn't
+	 */
+	public String getOutcomeReason(){
+		return outcomeReason;
+	}
+	
+	private static int subscriptionMask(Set<DroneEvent> events){
+		if(events == null){
+			return -1;
+		}
+		int mask = 0;
+		for(DroneEvent event: events){
+			mask |= 1 << event.ordinal();
+		}
+		return mask;
+	}
+	
+	/**
+	 * Decide what to do with a call back: drop it if the controller didn't subscribe to it or it is a progress
+	 * call it doesn't want yet, add it to the batch if the controller takes batches, otherwise it is made now.
+	 * @return true if the call back should be made now
+	 */
+	private boolean callNow(Drone drone,DroneEvent event,double value){
+		if((subscriptions[drone.slot] & (1 << event.ordinal())) == 0){
+			skippedCallbacks[event.ordinal()]++;
+			return false;
+		}
+		if((event == DroneEvent.TRANSITING) && !progressDue(drone,value)){
+			return false;
+		}
+		int controller = controllerOf[drone.slot];
+		if(watchdog.isBlocked(controller)){
+			watchdog.drop(controller);
+			return false;
+		}
+		if(takesBatches[controller] || (controllerThreads != null)){
+			controllerBatches[controller].add(clockTick,event,drone.view(),value);
+			return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Make a call back now, or batch it or drop it as callNow decides
+	 */
+	private void callBack(Drone drone,DroneEvent event,double value){
+		if(callNow(drone,event,value)){
+			dispatch(controllerOf[drone.slot],event,drone.view(),value);
+		}
+	}
+	
+	/**
+	 * Call a controller back for one event, timed if the watchdog is on
+	 */
+	private void dispatch(int controller,DroneEvent event,Drone drone,double value){
+		if(!watchdog.isEnabled()){
+			LegacyControllerAdapter.dispatch(controllers[controller],event,drone,value);
+			return;
+		}
+		long started = watchdog.start();
+		LegacyControllerAdapter.dispatch(controllers[controller],event,drone,value);
+		watchdog.record(controller,event.ordinal(),started);
+	}
+	
+	/**
+	 * Hand a controller its batch.  An ordinary controller has it played back a call at a time so the watchdog
+	 * can time each kind of call back, a BatchDroneController is timed for the whole batch.
+	 */
+	private void takeTurn(int controller,DroneEventBatch batch,DroneDecisions decisions){
+		if(!takesBatches[controller]){
+			for(int i = 0; i < batch.size(); i++){
+				dispatch(controller,batch.getEvent(i),batch.peekDrone(i),batch.getValue(i));
+			}
+			return;
+		}
+		BatchDroneController target = (BatchDroneController) controllers[controller];
+		if(!watchdog.isEnabled()){
+			target.droneEvents(batch,decisions);
+			return;
+		}
+		long started = watchdog.start();
+		target.droneEvents(batch,decisions);
+		watchdog.record(controller,ControllerWatchdog.BATCH,started);
+	}
+	
+	/**
+	 * Hand each controller that has a batch the events its drones had this round and apply what it decided,
+	 * one controller at a time in order
+	 */
+	private void deliverBatches(){
+		if(controllerThreads != null){
+			runControllerTurns();
+		}
+		for(int i = 0; i < controllerBatches.length; i++){
+			DroneEventBatch batch = controllerBatches[i];
+			if(batch.size() > 0){
+				DroneDecisions decisions = controllerDecisions[i];
+				if(controllerThreads == null){
+					decisions.clear();
+					takeTurn(i,batch,decisions);
+				}
+				batch.clear();
+				decisions.apply(this);
+				decisions.clear();
+			}
+		}
+	}
+	
+	/**
+	 * Run every controller that has a batch at the same time, each on its own thread, and wait for all of them.
+	 * Nothing in the simulation changes until they are all done, so they all see the same world.
+	 */
+	private void runControllerTurns(){
+		//Work out anything that is only worked out when read, so the controller threads only ever read
+		for(Drone drone: droneSlots){
+			store.updatePosition(drone.slot);
+			drone.getCharge();
+		}
+		dueTurns.clear();
+		for(int i = 0; i < controllerBatches.length; i++){
+			if(controllerBatches[i].size() > 0){
+				dueTurns.add(controllerTurns.get(i));
+			}
+		}
+		if(dueTurns.isEmpty()){
+			return;
+		}
+		try {
+			for(Future<Void> done: controllerThreads.invokeAll(dueTurns)){
+				done.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted waiting for the controllers",e);
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof RuntimeException){
+				throw (RuntimeException) e.getCause();
 			}
-			if(allDone){
-				simulationEnded = true;
-				System.out.println("Simulation ended with all passengers delivered at time "+clockTick);
+			if(e.getCause() instanceof Error){
+				throw (Error) e.getCause();
 			}
+			throw new IllegalStateException("A controller failed",e.getCause());
 		}
 	}
 	
-	public void end(String reason){
-		System.out.println("Simulation ending");
-		if(reason != null){
-			System.out.println("\t"+reason);
+	/**
+	 * @return true if the drone's controller wants a droneTransiting call at this progress, otherwise counts it as skipped
+	 */
+	private boolean progressDue(Drone drone,double progress){
+		int slot = drone.slot;
+		ProgressPolicy policy = progressPolicies[slot];
+		if(!policy.isEveryTick()){
+			long rounds = (clockTick - lastProgressCallTick[slot])/SIMULATION_SPEED;
+			if(!policy.shouldNotify(rounds,lastProgressCall[slot],progress)){
+				skippedCallbacks[DroneEvent.TRANSITING.ordinal()]++;
+				return false;
+			}
 		}
-		quitting = true;
+		lastProgressCallTick[slot] = clockTick;
+		lastProgressCall[slot] = progress;
+		return true;
+	}
+	
+	/**
+	 * A drone that isn't idle or dead is on its way to changing state 
+	 */
+	private static boolean isBusy(DroneState state){
+		return (state != null) && (state != DroneState.IDLING) && (state != DroneState.DEAD);
 	}
 
 
 	private void droneStartRecharging(Drone drone) {
-		drone.getController().droneDisembarkingEnd(new Drone(drone));
+		callBack(drone,DroneEvent.DISEMBARKING_END,0.0);
 		drone.setState(DroneState.RECHARGING);
-		drone.getController().droneRechargingStart(new Drone(drone));
+		startRecharge(drone,clockTick);
+		callBack(drone,DroneEvent.RECHARGING_START,0.0);
 	}
 
 
 
 	private void droneTakeOff(Drone drone){
-		drone.getController().droneEmbarkingEnd(new Drone(drone));
+		callBack(drone,DroneEvent.EMBARKING_END,0.0);
 		drone.setState(DroneState.ASCENDING);
-		drone.getController().droneAscendingStart(new Drone(drone));
+		callBack(drone,DroneEvent.ASCENDING_START,0.0);
 		drone.setTransitStart(clockTick+drone.getAscensionTime());
 	}
 	
 	private void droneLand(Drone drone) {
-		drone.getController().droneDescendingEnd(new Drone(drone));
+		callBack(drone,DroneEvent.DESCENDING_END,0.0);
 		drone.setStart(drone.getDestination());
 		drone.setState(DroneState.DISEMBARKING);
-		drone.getController().droneDisembarkingStart(new Drone(drone));
+		callBack(drone,DroneEvent.DISEMBARKING_START,0.0);
 		//Make sure that disembarking starts by setting the last disembark time to before the simulation started
 		drone.setDisembarkingStart(-drone.getDisembarkingDuration());
 	}
 	
+	/**
+	 * A headless simulator doesn't pace itself against the wall clock, ticks run back-to-back.
+	 * Use it for batch runs that don't attach a visualization.
+	 * @param headless
+	 */
+	public void setHeadless(boolean headless){
+		this.headless = headless;
+	}
+	
+	public boolean isHeadless(){
+		return headless;
+	}
+	
+	/**
+	 * Pause, single-step or change the speed of a running simulation through its clock.
+	 * Headless runs switch the clock to MAX_SPEED when they start.
+	 * @return the clock that paces this simulation
+	 */
+	public SimClock getClock(){
+		return clock;
+	}
+	
+	/**
+	 * Pace the simulation with another clock, e.g., one with its own time source.  Set this before calling start().
+	 */
+	void setClock(SimClock clock){
+		if(clock == null){
+			throw new IllegalArgumentException("Can't pace the simulation with a null clock");
+		}
+		this.clock = clock;
+	}
+	
+	/**
+	 * Turn timing of the controllers on, set a budget, or read how long they took.
+	 * The watchdog is off until it is enabled or given a budget.
+	 * @return the watchdog for this simulation's controllers
+	 */
+	public ControllerWatchdog getWatchdog(){
+		return watchdog;
+	}
+	
+	/**
+	 * 
+	 * @return how many simulated seconds passed per real second during the last call to start()
+	 */
+	public double getSimulatedSecondsPerWallSecond(){
+		if(wallClockNanos <= 0){
+			return 0.0;
+		}
+		return (clockTick/1000.0)/(wallClockNanos/1.0e9);
+	}
+	
+	/**
+	 * An event driven simulator keeps a queue of when each drone next has something to do and jumps the clock
+	 * straight to the next of those.  Drones that are just waiting out a timer aren't visited, and the ones that
+	 * are due are shuffled from a seed for each round instead of the simulation controller's random numbers, so a
+	 * given seed always gives the same results but not the same ones as the default fixed tick mode.
+	 * Drones that are ascending or descending only have their height updated when they are visited, so this is
+	 * meant for headless runs.  Set this before calling start().
+	 * @param eventDriven
+	 */
+	public void setEventDriven(boolean eventDriven){
+		this.eventDriven = eventDriven;
+	}
+	
+	public boolean isEventDriven(){
+		return eventDriven;
+	}
+	
+	/**
+	 * Run each controller on its own thread.  Every controller's call backs for a round are gathered into a batch,
+	 * as for a BatchDroneController, and at the end of the round all the controllers run at once.  Their routes,
+	 * manifests and plans are held until every one of them is done and then applied one controller at a time in
+	 * order, so a round takes as long as the slowest controller and the results don't depend on the threads.
+	 * Controllers that share anything, such as the simulation controller's random numbers, have to keep their
+	 * own order to stay repeatable.  Set this before calling start().
+	 * @param concurrent
+	 */
+	public void setConcurrentControllers(boolean concurrent){
+		if(controllerThreads != null){
+			controllerThreads.shutdown();
+			controllerThreads = null;
+		}
+		if(concurrent && (controllerTurns.size() > 0)){
+			controllerThreads = Executors.newFixedThreadPool(controllerTurns.size(),runnable -> {
+				Thread thread = new Thread(runnable,"Drone controller");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+	
+	public boolean isConcurrentControllers(){
+		return controllerThreads != null;
+	}
+	
+	/**
+	 * End the run as STALLED if this many simulated milliseconds go by with every drone idle, no one changing
+	 * state and no controller changing a route or manifest.  A drone that is boarding, flying or charging
+	 * counts as progress.  It is off until a timeout is set.  Set this before calling start().
+	 * @param stallTimeout in milliseconds, 0 or less never gives up
+	 */
+	public void setStallTimeout(long stallTimeout){
+		this.stallTimeout = stallTimeout;
+	}
+	
+	public long getStallTimeout(){
+		return stallTimeout;
+	}
+	
 	public boolean isHighResolution(){
 		return this.simulationController.isHighResolution();
 	}
 	
 	/**
-	 * Returns a copy of all the places in the simulation
+	 * Returns a copy of all the places in the simulation, as they were at the start of the round.
+	 * The places are made once a round and shared by everyone who asks, so who is waiting at them can't be
+	 * changed.  The set itself is the caller's own.
 	 * @return
 	 */
-	public TreeSet<Place> getPlaces(){
-		TreeSet<Place> ret = new TreeSet<Place>();
-		if(places != null){
-			for(Place p: places){
-				ret.add(new Place(p));
-			}
-		}
-		return ret;
+	public synchronized TreeSet<Place> getPlaces(){
+		takeSnapshotIfStale();
+		return new TreeSet<Place>(placesSnapshot);
 	};
 	
 	/**
-	 * Returns a copy of all the drones in the simulation
+	 * Returns a copy of all the drones in the simulation, shared and read-only like the places from getPlaces().
+	 * Their starts and destinations are the same copies that getPlaces() returns.
 	 * @return
-	 * @throws IllegalAccessException 
-	 * @throws InstantiationException 
 	 */
-	public TreeSet<Drone> getDrones(){ 
-		TreeSet<Drone> ret = new TreeSet<Drone>();
-		if(drones != null){
-			for(Drone d: drones){
-				ret.add(new Drone(d));
-			}
-		}
-		return ret;
+	public synchronized TreeSet<Drone> getDrones(){ 
+		takeSnapshotIfStale();
+		return new TreeSet<Drone>(dronesSnapshot);
 	};
 	
 	/**
-	 * Returns a copy of all the people in the simulation
+	 * Returns a copy of all the people in the simulation, shared like the places from getPlaces()
 	 * @return
 	 */
-	public TreeSet<Person> getPeople(){
-		TreeSet<Person> ret = new TreeSet<Person>();
+	public synchronized TreeSet<Person> getPeople(){
+		takeSnapshotIfStale();
+		return new TreeSet<Person>(peopleSnapshot);
+	};
+	
+	/**
+	 * Copy the world if the copies aren't from this round, which only happens the first time anyone asks for it
+	 * or outside of tick()
+	 */
+	private void takeSnapshotIfStale(){
+		snapshotsWanted = true;
+		if(snapshotTick != clockTick){
+			takeSnapshot();
+		}
+	}
+	
+	/**
+	 * Copy the places, drones and people for everyone who asks for them this round
+	 */
+	private synchronized void takeSnapshot(){
+		Map<Place,Place> placeCopies = new IdentityHashMap<Place,Place>();
+		TreeSet<Place> placeSet = new TreeSet<Place>();
+		if(places != null){
+			for(Place p: places){
+				Place copy = new Place(p);
+				copy.makeReadOnly();
+				placeCopies.put(p,copy);
+				placeSet.add(copy);
+			}
+		}
+		TreeSet<Drone> droneSet = new TreeSet<Drone>();
+		if(drones != null){
+			//The copies all live in one store
+			DroneStore copies = new DroneStore(drones.size(),true);
+			for(Drone d: drones){
+				Drone copy = new Drone(d,placeCopies,copies);
+				copy.makeReadOnly();
+				droneSet.add(copy);
+			}
+		}
+		TreeSet<Person> personSet = new TreeSet<Person>();
 		if(people != null){
 			for(Person p: people){
-				ret.add(new Person(p));
+				personSet.add(new Person(p));
 			}
 		}
-		return ret;
-	};
-	
+		placesSnapshot = placeSet;
+		dronesSnapshot = droneSet;
+		peopleSnapshot = personSet;
+		snapshotTick = clockTick;
+	}
 	
-
 	/**
 	 * 
 	 * @return the current simulated clock time in milliseconds
@@ -593,7 +1542,7 @@ public class Simulator {
 	/******************************************************************/
 	/* Set up the simulation */
 
-	private static Set<Place> loadPlaces(SimulationController simulationController) {
+	static Set<Place> loadPlaces(SimulationController simulationController) {
 		// Start with 10 basic locations
 		Set<Place> ret = new TreeSet<Place>();
 		ret.add(new Place("Winter Hall",new Position(34.448868,-119.6629439,0)));
@@ -661,7 +1610,7 @@ public class Simulator {
 			throw new IllegalArgumentException("Please supply a valid controller");
 		}
 		
-		TreeSet<Drone> ret = new TreeSet<Drone>();
+		Set<Drone> ret = new LinkedHashSet<Drone>();
 		for(int i = 0; i < MAX_DRONES_PER_CONTROLLER ; i++){
 			//Start all drones at the same spot
 			Place thePlace = places.iterator().next();
@@ -685,7 +1634,7 @@ public class Simulator {
 		return (ret);
 	}
 
-	private static Set<Person> loadPeople(Random random,Set<Place> places) {
+	static Set<Person> loadPeople(Random random,Set<Place> places) {
 		ArrayList<Place> randomizePlaces = new ArrayList<Place>();
 		randomizePlaces.addAll(places);
 		
@@ -728,16 +1677,7 @@ public class Simulator {
 		Set<Place> places = Simulator.loadPlaces(simController);
 		
 		//Generate the drones
-		Set<Drone> drones = new TreeSet<Drone>();
-		//Add each companies drones here
-		drones.addAll(loadDrones(places,new DistanceAwarePromiscuousController())); //Professor's Controller
-		
-		drones.addAll(loadDrones(places,new PromiscuousController())); //Professor's Controller
-		drones.addAll(loadDrones(places,new GreedyController())); //Professor's Controller
-		drones.addAll(loadDrones(places,new RandomDroneController())); //Professor's Controller
-		
-		
-		//drones.addAll(loadDrones(places,new MyDroneController())); //Student's Controller
+		Set<Drone> drones = loadCompanies(places);
 		
 		//Generate people
 		Set<Person> people = loadPeople(simController.getRandom(),places);
@@ -745,18 +1685,70 @@ public class Simulator {
 		//Build simulator
 		Simulator simulator = new Simulator(simController,people,places,drones);
 		
-		//Attach simulation to a visualizer
-		DroneWorld visualization = new DroneWorld(simulator,people,places,drones);
+		//Time the controllers and report on them at the end
+		boolean watched = Arrays.asList(args).contains("--watchdog");
+		simulator.getWatchdog().setEnabled(watched);
 		
-		//Start it up
-		visualization.launch();
+		//Give up on a run that stops getting anywhere, no one is watching a headless run to stop it
+		boolean headless = Arrays.asList(args).contains("--headless");
+		int stall = Arrays.asList(args).indexOf("--stall-timeout");
+		if(stall >= 0){
+			simulator.setStallTimeout(stallTimeout(args,stall + 1));
+		}
+		else if(headless){
+			simulator.setStallTimeout(HEADLESS_STALL_TIMEOUT);
+		}
+		
+		if(headless){
+			//Batch run, no visualization and no pacing
+			simulator.setHeadless(true);
+			simulator.start();
+		}
+		else{
+			//Attach simulation to a visualizer
+			DroneWorld visualization = new DroneWorld(simulator,people,places,drones);
+			
+			//Start it up
+			visualization.launch();
+		}
 		
 		calculateWinners(people);
+		if(watched){
+			System.out.print(simulator.getWatchdog().report());
+		}
 	}
 
 
 
 
+	/**
+	 * @return the simulated milliseconds given after --stall-timeout
+	 */
+	private static long stallTimeout(String[] args,int index){
+		try {
+			return Long.parseLong(args[index]);
+		} catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+			throw new IllegalArgumentException("--stall-timeout needs a number of simulated milliseconds, 0 never gives up");
+		}
+	}
+
+	/**
+	 * @return the drones of every company that competes in main
+	 */
+	static Set<Drone> loadCompanies(Set<Place> places) {
+		Set<Drone> drones = new LinkedHashSet<Drone>();
+		//Add each companies drones here
+		drones.addAll(loadDrones(places,new DistanceAwarePromiscuousController())); //Professor's Controller
+		
+		drones.addAll(loadDrones(places,new PromiscuousController())); //Professor's Controller
+		drones.addAll(loadDrones(places,new GreedyController())); //Professor's Controller
+		drones.addAll(loadDrones(places,new RandomDroneController())); //Professor's Controller
+		
+		
+		//drones.addAll(loadDrones(places,new MyDroneController())); //Student's Controller
+		return drones;
+	}
+	
 	private static void calculateWinners(Set<Person> people) {
 		//Aggregate scores
 		HashMap<String, Pair<Integer,Long>> living = new HashMap<String,Pair<Integer,Long>>();
@@ -863,28 +1855,46 @@ public class Simulator {
 	 * @param drone
 	 * @param place
 	 */
+	public void routeDrone(DroneView drone, PlaceView place) {
+		Drone d = dronesById.get(drone.getId());
+		int index = indexOf(place);
+		if((d == null) || (index < 0)){
+			throw new IllegalArgumentException("Unable to find a drone with id:"+drone.getId()+" and/or a place called:"+((place == null) ? null : place.getName()));
+		}
+		if(deferred.get() != null){
+			deferred.get().route(drone,index);
+			return;
+		}
+		setRoute(d,placeOrder[index]);
+		wakeIfRecharging(d);
+	}
+	
+	/**
+	 * The same, kept for controllers compiled when routes were given a Drone, e.g., lib/referenceControllers.jar
+	 */
 	public void routeDrone(Drone drone, Place place) {
-		routeDrone(drone,place.getName());
+		routeDrone((DroneView) drone,(PlaceView) place);
 	}
 	
 	/**
 	 * Convenience method to refer to a place by a string
 	 */
-	public void routeDrone(Drone drone, String place) {
-		boolean success = false;
-		for(Drone d:drones){
-			if(d.getId().equals(drone.getId())){
-				for(Place p: places){
-					if(p.getName().equals(place)){
-						d.setDestination(p);
-						success = true;
-					}
-				}
-			}
-		}
-		if(!success){
+	public void routeDrone(DroneView drone, String place) {
+		Drone d = dronesById.get(drone.getId());
+		int index = placeNames.indexOf(place);
+		if((d == null) || (index < 0)){
 			throw new IllegalArgumentException("Unable to find a drone with id:"+drone.getId()+" and/or a place called:"+place);
 		}
+		if(deferred.get() != null){
+			deferred.get().route(drone,index);
+			return;
+		}
+		setRoute(d,placeOrder[index]);
+		wakeIfRecharging(d);
+	}
+	
+	public void routeDrone(Drone drone, String place) {
+		routeDrone((DroneView) drone,place);
 	}
 	
 	/**
@@ -893,31 +1903,222 @@ public class Simulator {
 	 * @param drone
 	 * @param placeManifest, a set of place names that you want to tell the passengers you intend to go to in case you have to make a stop on the way
 	 */
-	public void setDroneManifest(Drone drone, Set<String> placeManifest) {
-		boolean success = false;
-		Set<String> validatedManifest = new TreeSet<String>();
+	public void setDroneManifest(DroneView drone, Set<String> placeManifest) {
+		Drone d = (drone == null) ? null : dronesById.get(drone.getId());
+		if(d == null){
+			throw new IllegalArgumentException("Unable to find a drone with id:"+((drone == null) ? null : drone.getId()));
+		}
 		
-		if(drone != null){
-			if((placeManifest == null) || (placeManifest.size() == 0)){
-				drone.setManifest(validatedManifest);
-				success = true;
+		//Names that aren't places are dropped, it is a copy of the bits if it is already a manifest over these places
+		Manifest validatedManifest;
+		if(placeManifest == null){
+			validatedManifest = new Manifest(placeNames);
+		}
+		else{
+			validatedManifest = new Manifest(placeNames,placeManifest);
+			validatedManifest.retainPlaces();
+		}
+		if(deferred.get() != null){
+			deferred.get().setManifest(drone,validatedManifest);
+			return;
+		}
+		setManifest(d,validatedManifest);
+	}
+	
+	/**
+	 * The same, kept for controllers compiled when manifests were given a Drone, e.g., lib/referenceControllers.jar
+	 */
+	public void setDroneManifest(Drone drone, Set<String> placeManifest) {
+		setDroneManifest((DroneView) drone,placeManifest);
+	}
+	
+	/**
+	 * Route a drone as a controller decided in its turn, to the place with this index
+	 */
+	void applyRoute(DroneView drone,int place){
+		Drone d = (drone == null) ? null : dronesById.get(drone.getId());
+		if(d == null){
+			throw new IllegalArgumentException("Unable to find a drone with id:"+((drone == null) ? null : drone.getId()));
+		}
+		setRoute(d,placeOrder[place]);
+		wakeIfRecharging(d);
+	}
+	
+	/**
+	 * Set a manifest a controller decided on in its turn, it is already over these places
+	 */
+	void applyManifest(DroneView drone,Manifest manifest){
+		Drone d = (drone == null) ? null : dronesById.get(drone.getId());
+		if(d == null){
+			throw new IllegalArgumentException("Unable to find a drone with id:"+((drone == null) ? null : drone.getId()));
+		}
+		setManifest(d,manifest);
+	}
+	
+	private void setRoute(Drone drone,Place place){
+		if(drone.getDestination() != place){
+			lastProgressTick = clockTick;
+		}
+		drone.setDestination(place);
+	}
+	
+	/**
+	 * A recharging drone reacts to a new destination right away
+	 */
+	private void wakeIfRecharging(Drone drone){
+		if(eventDriven && (drone.getState() == DroneState.RECHARGING)){
+			schedule.wake(drone.slot,clockTick);
+		}
+	}
+	
+	private void setManifest(Drone drone,Manifest validatedManifest){
+		if(!validatedManifest.equals(drone.getManifest())){
+			lastProgressTick = clockTick;
+		}
+		drone.setManifest(validatedManifest);
+	}
+	
+	/**
+	 * Start a fleet plan of routes and manifests to be checked and applied together
+	 * @return an empty plan
+	 */
+	public CommandBuffer commands(){
+		return new CommandBuffer(this);
+	}
+	
+	/**
+	 * @return the index used for a place in a CommandBuffer, places are numbered in the order getPlaces() lists them.  -1 if there isn't one.
+	 */
+	public int getPlaceIndex(String name){
+		return placeNames.indexOf(name);
+	}
+	
+	/**
+	 * @return the index used for a place in a CommandBuffer, -1 if it isn't one of this simulator's places
+	 */
+	int indexOf(PlaceView place){
+		return placeNames.indexOf(place);
+	}
+	
+	/**
+	 * @return the name of the place with this index in a CommandBuffer
+	 */
+	public String getPlaceName(int index){
+		if((index < 0) || (index >= placeOrder.length)){
+			throw new IllegalArgumentException("No place with index:"+index);
+		}
+		return placeOrder[index].getName();
+	}
+	
+	/**
+	 * @return the names of the places by index
+	 */
+	PlaceNames getPlaceNames(){
+		return placeNames;
+	}
+	
+	/**
+	 * @return how many places there are, and so the first index that isn't a place
+	 */
+	int getPlaceCount(){
+		return placeOrder.length;
+	}
+	
+	/**
+	 * @return the live place with this index, for code in the simulator that has to read every place
+	 */
+	Place placeAt(int index){
+		return placeOrder[index];
+	}
+	
+	/**
+	 * @return the live drone with this id, null if there isn't one
+	 */
+	Drone droneById(String id){
+		return dronesById.get(id);
+	}
+	
+	/**
+	 * @return the live people, for code in the simulator that has to read every person
+	 */
+	Set<Person> livePeople(){
+		return people;
+	}
+	
+	/**
+	 * Used by a controller host, whose simulator is a copy of the real world kept up to date from it, to hand its
+	 * controller a round.  The controller's routes, manifests and plans go into decisions rather than changing the copy.
+	 */
+	void hostTurn(long tick,DroneEventBatch batch,DroneDecisions decisions){
+		clockTick = tick;
+		deferred.set(decisions);
+		try {
+			takeTurn(0,batch,decisions);
+		}
+		finally{
+			deferred.remove();
+		}
+	}
+	
+	/**
+	 * Check every command in a plan
+	 * @return the slot of the drone for each command
+	 */
+	int[] validate(CommandBuffer commands){
+		int[] slots = new int[commands.size()];
+		for(int i = 0; i < commands.size(); i++){
+			Drone drone = dronesById.get(commands.getDroneId(i));
+			if(drone == null){
+				throw new IllegalArgumentException("Command "+i+": Unable to find a drone with id:"+commands.getDroneId(i));
 			}
-			else{
-				for(Place p: places){
-					if(placeManifest.contains(p.getName())){
-						validatedManifest.add(p.getName());
-					}
+			if(commands.isRoute(i)){
+				if(commands.getPlace(i) >= placeOrder.length){
+					throw new IllegalArgumentException("Command "+i+": No place with index:"+commands.getPlace(i));
 				}
-				for(Drone d:drones){
-					if(d.getId().equals(drone.getId())){
-						d.setManifest(validatedManifest);
-						success = true;
-					}
-				}	
 			}
+			else if(commands.getManifest(i).length() > placeOrder.length){
+				throw new IllegalArgumentException("Command "+i+": No place with index:"+(commands.getManifest(i).length()-1));
+			}
+			slots[i] = drone.slot;
+		}
+		return slots;
+	}
+	
+	void submit(CommandBuffer commands){
+		if(deferred.get() != null){
+			deferred.get().submit(commands);
+			return;
+		}
+		synchronized(submittedCommands){
+			submittedCommands.add(commands);
 		}
-		if(!success){
-			throw new IllegalArgumentException("Unable to find a drone with id:"+drone.getId());
+	}
+	
+	/**
+	 * Apply the plans submitted since the last round ended, in the order they came in
+	 */
+	private void applyCommands(){
+		synchronized(submittedCommands){
+			//Counted rather than iterated so that rounds without commands make no garbage
+			for(int c = 0; c < submittedCommands.size(); c++){
+				CommandBuffer commands = submittedCommands.get(c);
+				for(int i = 0; i < commands.size(); i++){
+					Drone drone = droneSlots[commands.getSlot(i)];
+					if(commands.isRoute(i)){
+						setRoute(drone,placeOrder[commands.getPlace(i)]);
+						wakeIfRecharging(drone);
+					}
+					else{
+						Manifest manifest = new Manifest(placeNames);
+						BitSet bits = commands.getManifest(i);
+						for(int p = bits.nextSetBit(0); p >= 0; p = bits.nextSetBit(p+1)){
+							manifest.add(p);
+						}
+						setManifest(drone,manifest);
+					}
+				}
+			}
+			submittedCommands.clear();
 		}
 	}
 	
@@ -926,10 +2127,14 @@ public class Simulator {
 	 * @param drone
 	 * @param placeManifest, where you tell the passengers you are going
 	 */
-	public void setDroneManifest(Drone drone, String placeManifest) {
+	public void setDroneManifest(DroneView drone, String placeManifest) {
 		TreeSet<String> helper = new TreeSet<String>();
 		helper.add(placeManifest);
 		setDroneManifest(drone,helper);
 	}
+	
+	public void setDroneManifest(Drone drone, String placeManifest) {
+		setDroneManifest((DroneView) drone,placeManifest);
+	}
 
 }
@@ -2,9 +2,17 @@ package simulator;
 
 import static org.junit.Assert.*;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.function.Function;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
@@ -14,15 +22,25 @@ import java.util.TreeSet;
 
 import org.junit.After;
 import org.junit.AfterClass;
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
 import reference.MyDroneController;
 import reference.MySimulationController;
+import simulator.enums.BudgetPolicy;
+import simulator.enums.ClockMode;
+import simulator.enums.DroneEvent;
 import simulator.enums.DroneState;
 import simulator.enums.PersonState;
+import simulator.enums.SimulationOutcome;
+import simulator.interfaces.BatchDroneController;
 import simulator.interfaces.DroneController;
+import simulator.interfaces.DroneView;
+import simulator.interfaces.DroneViewController;
+import simulator.interfaces.PlaceView;
+import simulator.interfaces.SimulationController;
 
 public class SimulatorTest {
 
@@ -99,7 +117,7 @@ public class SimulatorTest {
 			throw new IllegalArgumentException("Please supply a valid controller");
 		}
 		
-		TreeSet<Drone> ret = new TreeSet<Drone>();
+		Set<Drone> ret = new LinkedHashSet<Drone>();
 		for(int i = 0; i < params.maxDronesPerController ; i++){
 			//Start all drones at the same spot
 			Place thePlace = places.iterator().next();
@@ -179,10 +197,10 @@ public class SimulatorTest {
 		@Override
 		public void droneAscendingStart(Drone drone) {
 			if(drone.getPassengers().size() != 0){
-				passengerPickups.put(drone.getName(), drone);
+				passengerPickups.put(drone.getName(), drone.snapshot());
 			}
 			else{
-				passengerNonPickups.put(drone.getName(), drone);
+				passengerNonPickups.put(drone.getName(), drone.snapshot());
 			}
 		}
 
@@ -210,7 +228,7 @@ public class SimulatorTest {
 				int index = Integer.parseInt(drone.getName());
 
 				s.routeDrone(drone, placeList.get(index));
-				passengerIdleProcessed.put(drone.getName(), drone);
+				passengerIdleProcessed.put(drone.getName(), drone.snapshot());
 			}
 		}
 
@@ -246,7 +264,7 @@ public class SimulatorTest {
 		Set<Place> places = loadTestPlaces();
 		
 		//Generate the drones
-		Set<Drone> drones = new TreeSet<Drone>();
+		Set<Drone> drones = new LinkedHashSet<Drone>();
 		TestManifest_DroneController controller = new TestManifest_DroneController(simParams);
 		drones.addAll(loadTestDrones(simParams,places,controller));
 		
@@ -320,4 +338,1097 @@ public class SimulatorTest {
 		}
 	}
 
+	
+	
+	// A simulation controller with its own source of randomness so that two simulations can be compared
+	static class Seeded_SimulationController implements SimulationController {
+		
+		private Random random;
+		
+		Seeded_SimulationController(long seed){
+			random = new Random(seed);
+		}
+
+		@Override
+		public Random getRandom() {
+			return random;
+		}
+
+		@Override
+		public boolean isHighResolution() {
+			return false;
+		}
+
+		@Override
+		public long simulatorSpeed() {
+			return 100;
+		}
+	}
+	
+	// A quiet controller that delivers whoever is waiting where its drones are and logs every call back it gets
+	static class Delivery_DroneController implements DroneViewController {
+		
+		private Simulator simulator;
+		private String company;
+		private int droneCounter = 0;
+		List<String> log = new ArrayList<String>();
+		//The call backs to subscribe to, null for all of them
+		Set<DroneEvent> events;
+		ProgressPolicy policy;
+		
+		Delivery_DroneController(String company){
+			this.company = company;
+		}
+		
+		@Override
+		public Set<DroneEvent> getSubscribedEvents(){
+			return (events == null) ? DroneViewController.super.getSubscribedEvents() : events;
+		}
+		
+		@Override
+		public ProgressPolicy getTransitProgressPolicy(){
+			return (policy == null) ? DroneViewController.super.getTransitProgressPolicy() : policy;
+		}
+		
+		private void log(String event,DroneView drone){
+			log.add(simulator.getClockTick()+" "+event+" "+drone.getName()+" "+drone.getState()+" "+drone.getCharge()+" "+drone.getPosition());
+		}
+
+		@Override
+		public void setSimulator(Simulator simulator) {
+			this.simulator = simulator;
+		}
+
+		@Override
+		public void droneEmbarkingStart(DroneView drone) { log("embarkingStart",drone); }
+		@Override
+		public void droneEmbarkingAGroupStart(DroneView drone) { log("embarkingAGroupStart",drone); }
+		@Override
+		public void droneEmbarkingAGroupEnd(DroneView drone) { log("embarkingAGroupEnd",drone); }
+		@Override
+		public void droneEmbarkingEnd(DroneView drone) { log("embarkingEnd",drone); }
+		@Override
+		public void droneAscendingStart(DroneView drone) { log("ascendingStart",drone); }
+		@Override
+		public void droneAscendingEnd(DroneView drone) { log("ascendingEnd",drone); }
+		@Override
+		public void droneTransitingStart(DroneView drone) { log("transitingStart",drone); }
+		@Override
+		public void droneTransiting(DroneView drone, double percent) { log("transiting "+percent,drone); }
+		@Override
+		public void droneTransitingEnd(DroneView drone) { log("transitingEnd",drone); }
+		@Override
+		public void droneExploding(DroneView drone) { log("exploding",drone); }
+		@Override
+		public void droneHasDied(DroneView drone) { log("hasDied",drone); }
+		@Override
+		public void droneDescendingStart(DroneView drone) { log("descendingStart",drone); }
+		@Override
+		public void droneDescendingEnd(DroneView drone) { log("descendingEnd",drone); }
+		@Override
+		public void droneDisembarkingStart(DroneView drone) { log("disembarkingStart",drone); }
+		@Override
+		public void droneDisembarkingGroupStart(DroneView drone) { log("disembarkingGroupStart",drone); }
+		@Override
+		public void droneDisembarkingGroupEnd(DroneView drone) { log("disembarkingGroupEnd",drone); }
+		@Override
+		public void droneDisembarkingEnd(DroneView drone) { log("disembarkingEnd",drone); }
+		@Override
+		public void droneRechargingStart(DroneView drone) { log("rechargingStart",drone); }
+		@Override
+		public void droneRecharging(DroneView drone, double percent) { log("recharging "+percent,drone); }
+		@Override
+		public void droneDoneRecharging(DroneView drone) { log("doneRecharging",drone); }
+
+		@Override
+		public void droneIdling(DroneView drone) {
+			log("idling",drone);
+			//Take the first person waiting here who can be reached on this charge, otherwise anyone waiting here
+			PlaceView here = drone.getStart();
+			Person passenger = null;
+			for(Person p: here.getWaitingToEmbark()){
+				if((passenger == null) || (!inRange(drone,here,placeCalled(passenger.getDestination())) && inRange(drone,here,placeCalled(p.getDestination())))){
+					passenger = p;
+				}
+			}
+			if(passenger != null){
+				simulator.setDroneManifest(drone,passenger.getDestination());
+				simulator.routeDrone(drone,passenger.getDestination());
+			}
+			else{
+				//Go to where the most people are waiting, preferring places that can be reached
+				Place busiest = null;
+				for(Place p: simulator.getPlaces()){
+					if((busiest == null) || (!inRange(drone,here,busiest) && inRange(drone,here,p)) || ((inRange(drone,here,busiest) == inRange(drone,here,p)) && (p.getWaitingToEmbark().size() > busiest.getWaitingToEmbark().size()))){
+						busiest = p;
+					}
+				}
+				if((busiest != null) && (busiest.getWaitingToEmbark().size() > 0)){
+					simulator.setDroneManifest(drone,new TreeSet<String>());
+					simulator.routeDrone(drone,busiest.getName());
+				}
+			}
+		}
+		
+		private Place placeCalled(String name){
+			for(Place p: simulator.getPlaces()){
+				if(p.getName().equals(name)){
+					return p;
+				}
+			}
+			return null;
+		}
+		
+		private boolean inRange(DroneView drone,PlaceView from,PlaceView to){
+			double meters = DistanceCalculator.distance(from.getPosition().getLatitude(),from.getPosition().getLongitude(),to.getPosition().getLatitude(),to.getPosition().getLongitude());
+			return meters*drone.getDischargeRate() < 0.9*drone.getCharge();
+		}
+
+		@Override
+		public String getNextDroneName() {
+			return company+" "+(droneCounter++);
+		}
+
+		@Override
+		public String getCompanyName() {
+			return company;
+		}
+	}
+	
+	//A small world that can be built the same way twice from a seed
+	static class SeededWorld {
+		Simulator simulator;
+		Set<Person> people;
+		List<Delivery_DroneController> controllers = new ArrayList<Delivery_DroneController>();
+		
+		SeededWorld(long seed,int companies,int dronesPerCompany,int maxPeople){
+			this(seed,companies,dronesPerCompany,maxPeople,null,null,false);
+		}
+		
+		/**
+		 * @param events the call backs the controllers subscribe to, null for all of them
+		 * @param policy how often the controllers want transit progress, null for every round
+		 * @param batched true to run the controllers through a LegacyControllerAdapter
+		 */
+		SeededWorld(long seed,int companies,int dronesPerCompany,int maxPeople,Set<DroneEvent> events,ProgressPolicy policy,boolean batched){
+			this(seed,companies,dronesPerCompany,maxPeople,events,policy,batched ? LegacyControllerAdapter::new : controller -> controller);
+		}
+		
+		/**
+		 * @param simulated what the simulator is given for each controller
+		 */
+		SeededWorld(long seed,int companies,int dronesPerCompany,int maxPeople,Set<DroneEvent> events,ProgressPolicy policy,Function<Delivery_DroneController,DroneController> simulated){
+			SimulationTestParameters params = new SimulationTestParameters(dronesPerCompany,5,maxPeople);
+			Seeded_SimulationController simController = new Seeded_SimulationController(seed);
+			Set<Place> places = loadTestPlaces();
+			Set<Drone> drones = new LinkedHashSet<Drone>();
+			for(int i = 0; i < companies; i++){
+				Delivery_DroneController controller = new Delivery_DroneController("Company "+i);
+				controller.events = events;
+				controller.policy = policy;
+				controllers.add(controller);
+				drones.addAll(loadTestDrones(params,places,simulated.apply(controller)));
+			}
+			people = loadTestPeople(params,simController.getRandom(),places);
+			simulator = new Simulator(simController,people,places,drones);
+		}
+		
+		/**
+		 * Run the simulation on this thread until it ends or the clock passes maxTick 
+		 */
+		void run(long maxTick){
+			while(simulator.tick()){
+				if(simulator.getClockTick() > maxTick){
+					fail("Simulation didn't finish by "+maxTick);
+				}
+			}
+		}
+		
+		String results(){
+			StringBuffer out = new StringBuffer();
+			for(Person p: people){
+				out.append(p.getId()+" "+p.getState()+" "+p.getDeliveryCompany()+" "+p.getStartTransitTime()+" "+p.getEndTransitTime()+"\n");
+			}
+			return out.toString();
+		}
+		
+		List<String> log(){
+			List<String> ret = new ArrayList<String>();
+			for(Delivery_DroneController c: controllers){
+				ret.addAll(c.log);
+			}
+			return ret;
+		}
+	}
+	
+	private static final long FOUR_HOURS = 4*60*60*1000L;
+	
+	@Test
+	//A headless run skips the pacing but otherwise plays out exactly like a paced one
+	public void testHeadlessMatchesPaced() {
+		SeededWorld headless = new SeededWorld(42,2,3,60);
+		headless.simulator.setHeadless(true);
+		headless.simulator.start();
+		
+		//Paced at 60 times real time on a clock whose time only moves while it waits for the next round
+		SeededWorld paced = new SeededWorld(42,2,3,60);
+		long[] now = {0};
+		int[] waits = {0};
+		SimClock clock = new SimClock(100,() -> now[0],(c,nanos) -> {
+			assertTrue("The clock would wait forever",nanos > 0);
+			waits[0]++;
+			now[0] += nanos;
+		});
+		clock.setScale(60);
+		paced.simulator.setClock(clock);
+		paced.simulator.start();
+		
+		assertEquals(ClockMode.SCALED,clock.getMode());
+		assertTrue(waits[0] > 0);
+		assertEquals(headless.simulator.getOutcome(),paced.simulator.getOutcome());
+		assertEquals(headless.simulator.getClockTick(),paced.simulator.getClockTick());
+		assertEquals(headless.results(),paced.results());
+		assertEquals(headless.log(),paced.log());
+	}
+	
+	@Test
+	//The event driven engine draws its own shuffles, so it plays out differently from the fixed tick loop, but
+	//always the same way for a given seed and ends the same way
+	public void testEventDrivenIsRepeatable() {
+		SeededWorld fixed = new SeededWorld(42,2,3,60);
+		fixed.run(FOUR_HOURS);
+		
+		SeededWorld eventDriven = new SeededWorld(42,2,3,60);
+		eventDriven.simulator.setEventDriven(true);
+		eventDriven.run(FOUR_HOURS);
+		
+		SeededWorld again = new SeededWorld(42,2,3,60);
+		again.simulator.setEventDriven(true);
+		again.run(FOUR_HOURS);
+		
+		assertEquals(eventDriven.simulator.getClockTick(),again.simulator.getClockTick());
+		assertEquals(eventDriven.results(),again.results());
+		assertEquals(eventDriven.log(),again.log());
+		
+		assertEquals(fixed.simulator.getOutcome(),eventDriven.simulator.getOutcome());
+		assertEquals(fixed.simulator.getPersonCount(PersonState.ARRIVED),eventDriven.simulator.getPersonCount(PersonState.ARRIVED));
+		assertEquals(fixed.simulator.getPersonCount(PersonState.DEAD),eventDriven.simulator.getPersonCount(PersonState.DEAD));
+	}
+	
+	@Test
+	//Rounds where no controller is called back shouldn't create any garbage
+	public void testSteadyStateTickDoesNotAllocate() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+		Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+		threads.setThreadAllocatedMemoryEnabled(true);
+		
+		SimulationTestParameters params = new SimulationTestParameters(50,5,10);
+		Seeded_SimulationController simController = new Seeded_SimulationController(3);
+		Set<Place> places = loadTestPlaces();
+		Set<Drone> drones = loadTestDrones(params,places,new Delivery_DroneController("Company"));
+		Set<Person> people = loadTestPeople(params,simController.getRandom(),places);
+		Simulator simulator = new Simulator(simController,people,places,drones);
+		
+		//Every drone spends the next minute climbing, which doesn't call back to the controller
+		for(Drone d: drones){
+			d.setState(DroneState.ASCENDING);
+			d.setTransitStart(d.getAscensionTime());
+		}
+		for(int i = 0; i < 100; i++){
+			assertTrue(simulator.tick());
+		}
+		
+		long threadId = Thread.currentThread().getId();
+		long before = threads.getThreadAllocatedBytes(threadId);
+		int ticks = 400;
+		for(int i = 0; i < ticks; i++){
+			simulator.tick();
+		}
+		long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+		for(Drone d: drones){
+			assertEquals(DroneState.ASCENDING,d.getState());
+		}
+		assertTrue("Allocated "+(allocated/ticks)+" bytes per tick",(allocated/ticks) == 0);
+	}
+	
+	@Test
+	//The running counts of people in each state should always agree with looking at everyone
+	public void testPersonCounts() {
+		SeededWorld world = new SeededWorld(42,2,3,60);
+		assertEquals(world.people.size(),world.simulator.getPersonCount(PersonState.WAITING));
+		boolean running = true;
+		while(running){
+			running = world.simulator.tick();
+			if(((world.simulator.getClockTick() % 10000) == 0) || !running){
+				int[] counts = new int[PersonState.values().length];
+				for(Person p: world.people){
+					counts[p.getState().ordinal()]++;
+				}
+				for(PersonState state: PersonState.values()){
+					assertEquals(state.toString(),counts[state.ordinal()],world.simulator.getPersonCount(state));
+				}
+			}
+			if(world.simulator.getClockTick() > FOUR_HOURS){
+				fail("Simulation didn't finish");
+			}
+		}
+	}
+	
+	@Test
+	//Drones that sit idle while people wait should end the run as stalled instead of spinning forever
+	public void testStallDetector() {
+		//Nobody gives up on a run unless they ask to
+		Simulator simulator = lazyWorld();
+		assertEquals(0,simulator.getStallTimeout());
+		while(simulator.getClockTick() < 60*60*1000){
+			assertTrue(simulator.tick());
+		}
+		assertEquals(SimulationOutcome.RUNNING,simulator.getOutcome());
+		
+		simulator = lazyWorld();
+		long fiveMinutes = 5*60*1000;
+		simulator.setStallTimeout(fiveMinutes);
+		while(simulator.tick()){
+			if(simulator.getClockTick() > FOUR_HOURS){
+				fail("The stall wasn't noticed");
+			}
+		}
+		assertEquals(SimulationOutcome.STALLED,simulator.getOutcome());
+		assertEquals(fiveMinutes,simulator.getClockTick());
+		assertTrue(simulator.getOutcomeReason().startsWith("No progress between 0 and "+fiveMinutes));
+		assertTrue(simulator.getPersonCount(PersonState.WAITING) > 0);
+		
+		//A run where the drones do their job shouldn't be mistaken for a stall
+		SeededWorld world = new SeededWorld(42,2,3,60);
+		world.simulator.setStallTimeout(fiveMinutes);
+		world.run(FOUR_HOURS);
+		assertTrue(world.simulator.getOutcome() != SimulationOutcome.STALLED);
+		assertTrue(world.simulator.getOutcome() != SimulationOutcome.RUNNING);
+	}
+	
+	//Drones that never go anywhere, with people waiting for them
+	private static Simulator lazyWorld(){
+		SimulationTestParameters params = new SimulationTestParameters(3,5,20);
+		Seeded_SimulationController simController = new Seeded_SimulationController(5);
+		Set<Place> places = loadTestPlaces();
+		Set<Drone> drones = loadTestDrones(params,places,new Delivery_DroneController("Lazy Company"){
+			@Override
+			public void droneIdling(DroneView drone) {
+				//Never go anywhere
+			}
+		});
+		Set<Person> people = loadTestPeople(params,simController.getRandom(),places);
+		return new Simulator(simController,people,places,drones);
+	}
+	
+	@Test
+	//A drone in transit should fly a straight leg, arrive on the round worked out at launch and follow a reroute
+	public void testClosedFormTransit() {
+		SimulationTestParameters params = new SimulationTestParameters(1,1,1);
+		Seeded_SimulationController simController = new Seeded_SimulationController(11);
+		Set<Place> places = loadTestPlaces();
+		Set<Drone> drones = loadTestDrones(params,places,new Delivery_DroneController("Company"));
+		Set<Person> people = loadTestPeople(params,simController.getRandom(),places);
+		Simulator simulator = new Simulator(simController,people,places,drones);
+		
+		Drone drone = drones.iterator().next();
+		Place start = drone.getStart();
+		Place sbcc = null;
+		Place candy = null;
+		for(Place p: places){
+			if(p.getName().equals("SBCC")){
+				sbcc = p;
+			}
+			if(p.getName().equals("Mother Stearn's Candy")){
+				candy = p;
+			}
+		}
+		drone.setDestination(sbcc);
+		drone.setState(DroneState.IN_TRANSIT);
+		
+		double metersPerTick = drone.getSpeed()*0.1;
+		double metersForTrip = DistanceCalculator.distance(start.getPosition().getLatitude(),start.getPosition().getLongitude(),sbcc.getPosition().getLatitude(),sbcc.getPosition().getLongitude());
+		long ticks = (long) Math.ceil(metersForTrip/metersPerTick);
+		
+		//Rounds flown
+		simulator.tick();
+		long tick = 1;
+		while(drone.getState() == DroneState.IN_TRANSIT){
+			simulator.tick();
+			tick++;
+			if(tick == ticks/2){
+				/* Half way there on a straight line between the two places */
+				Position position = drone.getPosition();
+				double flown = DistanceCalculator.distance(start.getPosition().getLatitude(),start.getPosition().getLongitude(),position.getLatitude(),position.getLongitude());
+				double toGo = DistanceCalculator.distance(position.getLatitude(),position.getLongitude(),sbcc.getPosition().getLatitude(),sbcc.getPosition().getLongitude());
+				assertEquals(metersForTrip,flown+toGo,1.0);
+				assertEquals(tick*metersPerTick,flown,1.0);
+			}
+		}
+		assertEquals(ticks,tick);
+		assertEquals(DroneState.DESCENDING,drone.getState());
+		assertEquals(1.0-ticks*metersPerTick*drone.getDischargeRate(),drone.getCharge(),1e-9);
+		assertEquals(sbcc.getPosition().getLatitude(),drone.getPosition().getLatitude(),0.0);
+		
+		/* Turn around part way through the next trip */
+		drone.setStart(sbcc);
+		drone.setDestination(start);
+		drone.setCharge(1.0);
+		drone.setState(DroneState.IN_TRANSIT);
+		for(int i = 0; i < 50; i++){
+			simulator.tick();
+		}
+		simulator.routeDrone(drone,candy);
+		while(drone.getState() == DroneState.IN_TRANSIT){
+			simulator.tick();
+		}
+		assertEquals(DroneState.DESCENDING,drone.getState());
+		assertEquals(candy.getPosition().getLatitude(),drone.getPosition().getLatitude(),0.0);
+		assertEquals(candy.getPosition().getLongitude(),drone.getPosition().getLongitude(),0.0);
+	}
+	
+	@Test
+	//Passengers should be wherever their drone is as it flies, and reading where they are shouldn't change anything
+	public void testPassengersFlyWithDrone() {
+		SimulationTestParameters params = new SimulationTestParameters(1,1,1);
+		Seeded_SimulationController simController = new Seeded_SimulationController(11);
+		Set<Place> places = loadTestPlaces();
+		Set<Drone> drones = loadTestDrones(params,places,new Delivery_DroneController("Company"));
+		Set<Person> people = loadTestPeople(params,simController.getRandom(),places);
+		Simulator simulator = new Simulator(simController,people,places,drones);
+		
+		Drone drone = drones.iterator().next();
+		Person rider = people.iterator().next();
+		for(Place p: places){
+			p.getWaitingToEmbark().remove(rider);
+			if(p.getName().equals("SBCC")){
+				drone.setDestination(p);
+			}
+		}
+		drone.getPassengers().add(rider);
+		rider.setState(PersonState.IN_DRONE);
+		drone.setTransitStart(simulator.getClockTick());
+		drone.setState(DroneState.ASCENDING);
+		simulator.tick();
+		simulator.tick();
+		simulator.tick();
+		assertEquals(DroneState.IN_TRANSIT,drone.getState());
+		
+		Position before = rider.getPosition();
+		assertEquals(drone.getPosition(),before);
+		assertTrue(drone.getStore().positionTicks[drone.slot] != DroneStore.UP_TO_DATE);
+		simulator.tick();
+		assertNotEquals(before,rider.getPosition());
+		assertEquals(drone.getPosition(),rider.getPosition());
+	}
+	
+	@Test
+	//Recharging should tell the controller about each 10% as it is reached and know the exact charge if it is interrupted
+	public void testAnalyticRecharge() {
+		SimulationTestParameters params = new SimulationTestParameters(1,1,1);
+		Seeded_SimulationController simController = new Seeded_SimulationController(13);
+		Set<Place> places = loadTestPlaces();
+		Delivery_DroneController controller = new Delivery_DroneController("Company"){
+			@Override
+			public void droneIdling(DroneView drone) {
+				//Stay put
+			}
+		};
+		Set<Drone> drones = loadTestDrones(params,places,controller);
+		Set<Person> people = loadTestPeople(params,simController.getRandom(),places);
+		Simulator simulator = new Simulator(simController,people,places,drones);
+		
+		Drone drone = drones.iterator().next();
+		drone.setCharge(0.05);
+		drone.setState(DroneState.RECHARGING);
+		
+		//1% a round
+		double chargeDelta = drone.getRechargeRate()/10.0;
+		long rounds = 0;
+		while(drone.getState() == DroneState.RECHARGING){
+			simulator.tick();
+			rounds++;
+		}
+		assertEquals(DroneState.IDLING,drone.getState());
+		assertEquals(1.0,drone.getCharge(),0.0);
+		assertEquals((long)Math.floor((1.0-0.05)/chargeDelta)+1,rounds,1);
+		int notifications = 0;
+		for(String line: controller.log){
+			if(line.contains(" recharging ")){
+				notifications++;
+			}
+		}
+		//From 10% to 90%, going past 100% is reported as done
+		assertEquals(9,notifications);
+		
+		/* Pull the drone off the charger part way through */
+		drone.setCharge(0.5);
+		drone.setState(DroneState.RECHARGING);
+		for(int i = 0; i < 25; i++){
+			simulator.tick();
+		}
+		assertEquals(0.5+25*chargeDelta,drone.getCharge(),1e-9);
+		Place elsewhere = null;
+		for(Place p: places){
+			if(!p.equals(drone.getStart())){
+				elsewhere = p;
+			}
+		}
+		simulator.routeDrone(drone,elsewhere);
+		simulator.tick();
+		assertEquals(DroneState.BEGIN,drone.getState());
+		assertEquals(0.5+25*chargeDelta,drone.getCharge(),1e-9);
+	}
+
+	@Test
+	//Callbacks should be handed the same read-only view of the live drone every time, snapshots keep the old state
+	public void testDroneViewIsLive() {
+		SimulationTestParameters params = new SimulationTestParameters(1,1,1);
+		Seeded_SimulationController simController = new Seeded_SimulationController(13);
+		Set<Place> places = loadTestPlaces();
+		final List<DroneView> views = new ArrayList<DroneView>();
+		Delivery_DroneController controller = new Delivery_DroneController("Company"){
+			@Override
+			public void droneRecharging(DroneView drone, double percent) {
+				views.add(drone);
+			}
+			@Override
+			public void droneIdling(DroneView drone) {
+				//Stay put
+			}
+		};
+		Set<Drone> drones = loadTestDrones(params,places,controller);
+		Set<Person> people = loadTestPeople(params,simController.getRandom(),places);
+		Simulator simulator = new Simulator(simController,people,places,drones);
+		
+		Drone drone = drones.iterator().next();
+		drone.setCharge(0.05);
+		drone.setState(DroneState.RECHARGING);
+		while(views.size() < 2){
+			simulator.tick();
+		}
+		assertSame(views.get(0),views.get(1));
+		
+		DroneView view = views.get(0);
+		Drone snapshot = view.snapshot();
+		assertEquals(drone.getId(),view.getId());
+		assertEquals(drone.getStart().getName(),view.getStart().getName());
+		assertSame(view.getStart(),view.getDestination());
+		
+		//The view follows the drone, the snapshot doesn't
+		double charge = drone.getCharge();
+		simulator.tick();
+		assertEquals(drone.getCharge(),view.getCharge(),0.0);
+		assertTrue(view.getCharge() > charge);
+		assertEquals(charge,snapshot.getCharge(),0.0);
+		
+		try {
+			view.getPassengers().clear();
+			fail("Passengers shouldn't be changeable through a view");
+		} catch (UnsupportedOperationException e) {
+		}
+		try {
+			view.getStart().getWaitingToEmbark().clear();
+			fail("People waiting shouldn't be changeable through a view");
+		} catch (UnsupportedOperationException e) {
+		}
+	}
+
+	@Test
+	//A controller with the call backs that take a Drone should get the same read-only live drone every time, not a copy
+	public void testDroneCallbacksAreLive() {
+		SimulationTestParameters params = new SimulationTestParameters(1,1,1);
+		Seeded_SimulationController simController = new Seeded_SimulationController(13);
+		Set<Place> places = loadTestPlaces();
+		final List<Drone> told = new ArrayList<Drone>();
+		MyDroneController controller = new MyDroneController(){
+			@Override
+			public void droneRecharging(Drone drone, double percent) {
+				told.add(drone);
+			}
+		};
+		Set<Drone> drones = loadTestDrones(params,places,controller);
+		Set<Person> people = loadTestPeople(params,simController.getRandom(),places);
+		Simulator simulator = new Simulator(simController,people,places,drones);
+
+		Drone drone = drones.iterator().next();
+		drone.setCharge(0.05);
+		drone.setState(DroneState.RECHARGING);
+		while(told.size() < 2){
+			simulator.tick();
+		}
+		assertSame(told.get(0),told.get(1));
+
+		Drone live = told.get(0);
+		assertEquals(drone,live);
+		assertTrue(live.deepEquals(drone));
+		assertTrue(drone.getStart().deepEquals(live.getStart()));
+		double charge = drone.getCharge();
+		simulator.tick();
+		assertTrue(live.getCharge() > charge);
+		assertEquals(drone.getCharge(),live.getCharge(),0.0);
+
+		try {
+			live.getManifest().clear();
+			fail("The manifest shouldn't be changeable through a call back's drone");
+		} catch (UnsupportedOperationException e) {
+		}
+		try {
+			live.getStart().getWaitingToEmbark().add(PersonTest.makeDummyPerson());
+			fail("People waiting shouldn't be changeable through a call back's drone");
+		} catch (UnsupportedOperationException e) {
+		}
+	}
+
+	@Test
+	//Everyone asking for the world in a round should share one copy of it, a new one is made the next round
+	public void testWorldSnapshotPerTick() {
+		SeededWorld world = new SeededWorld(3,2,2,20);
+		Simulator simulator = world.simulator;
+		simulator.tick();
+		
+		TreeSet<Place> places = simulator.getPlaces();
+		TreeSet<Drone> drones = simulator.getDrones();
+		TreeSet<Person> people = simulator.getPeople();
+		assertSame(places.first(),simulator.getPlaces().first());
+		assertSame(drones.first(),simulator.getDrones().first());
+		assertSame(people.first(),simulator.getPeople().first());
+		assertEquals(world.people.size(),people.size());
+		
+		//The drone copies point at the same place copies, and share one detached store
+		for(Drone d: drones){
+			assertSame(drones.first().getStore(),d.getStore());
+			assertTrue(d.getStore().isDetached());
+			assertTrue(places.contains(d.getStart()));
+			boolean shared = false;
+			for(Place p: places){
+				shared |= (p == d.getStart());
+			}
+			assertTrue(shared);
+		}
+		
+		//Each caller has its own set, but what is in it is shared so it can't be changed
+		int placeCount = places.size();
+		places.clear();
+		assertEquals(placeCount,simulator.getPlaces().size());
+		Place place = simulator.getPlaces().first();
+		try {
+			place.getWaitingToEmbark().clear();
+			fail("The people waiting at a shared place shouldn't be changeable");
+		} catch (UnsupportedOperationException e) {
+		}
+		Drone drone = simulator.getDrones().first();
+		try {
+			drone.getManifest().add(place.getName());
+			fail("The manifest of a shared drone shouldn't be changeable");
+		} catch (UnsupportedOperationException e) {
+		}
+		try {
+			drone.getPassengers().clear();
+			fail("The passengers of a shared drone shouldn't be changeable");
+		} catch (UnsupportedOperationException e) {
+		}
+		//A copy of a shared drone is the caller's to change
+		new Drone(drone).getManifest().add(place.getName());
+		
+		simulator.tick();
+		assertNotSame(place,simulator.getPlaces().first());
+		assertNotSame(drone,simulator.getDrones().first());
+		assertNotSame(people.first(),simulator.getPeople().first());
+	}
+
+	@Test
+	//The companies main runs were compiled against the call backs and routes that took a Drone, they have to still work
+	public void testMainCompaniesDeliver() {
+		MySimulationController simController = new MySimulationController();
+		Set<Place> places = Simulator.loadPlaces(simController);
+		Set<Drone> drones = Simulator.loadCompanies(places);
+		Set<Person> people = Simulator.loadPeople(simController.getRandom(),places);
+		Simulator simulator = new Simulator(simController,people,places,drones);
+		while((simulator.getPersonCount(PersonState.ARRIVED) == 0) && simulator.tick()){
+			if(simulator.getClockTick() > FOUR_HOURS){
+				fail("Nobody was delivered by "+FOUR_HOURS);
+			}
+		}
+		assertTrue(simulator.getPersonCount(PersonState.ARRIVED) > 0);
+	}
+
+	@Test
+	//Controllers that only want some call backs should only get those, without changing how the run plays out
+	public void testSubscribedEvents() {
+		SeededWorld everything = new SeededWorld(42,2,3,60);
+		everything.run(FOUR_HOURS);
+		assertEquals(0,everything.simulator.getSkippedCallbacks());
+		
+		SeededWorld some = new SeededWorld(42,2,3,60,EnumSet.of(DroneEvent.IDLING,DroneEvent.TRANSITING_END),null,false);
+		some.run(FOUR_HOURS);
+		assertEquals(everything.results(),some.results());
+		
+		//Only the subscribed lines are left in the log
+		List<String> expected = new ArrayList<String>();
+		long transiting = 0;
+		for(String line: everything.log()){
+			String event = line.split(" ")[1];
+			if(event.equals("idling") || event.equals("transitingEnd")){
+				expected.add(line);
+			}
+			if(event.equals("transiting")){
+				transiting++;
+			}
+		}
+		assertEquals(expected,some.log());
+		assertEquals(transiting,some.simulator.getSkippedCallbacks(DroneEvent.TRANSITING));
+		assertEquals(0,some.simulator.getSkippedCallbacks(DroneEvent.IDLING));
+		assertEquals(everything.log().size()-expected.size(),some.simulator.getSkippedCallbacks());
+	}
+
+	@Test
+	//Thinning out transit progress calls should drop only those calls
+	public void testTransitProgressPolicy() {
+		SeededWorld everyTick = new SeededWorld(42,2,3,60);
+		everyTick.run(FOUR_HOURS);
+		List<String> others = new ArrayList<String>();
+		long transiting = 0;
+		for(String line: everyTick.log()){
+			if(line.split(" ")[1].equals("transiting")){
+				transiting++;
+			}
+			else{
+				others.add(line);
+			}
+		}
+		
+		for(ProgressPolicy policy: new ProgressPolicy[]{ProgressPolicy.everyTicks(10),ProgressPolicy.everyPercent(0.25),ProgressPolicy.onChange(0.3)}){
+			SeededWorld thinned = new SeededWorld(42,2,3,60,null,policy,false);
+			thinned.run(FOUR_HOURS);
+			assertEquals(policy.toString(),everyTick.results(),thinned.results());
+			
+			List<String> thinnedOthers = new ArrayList<String>();
+			long thinnedTransiting = 0;
+			for(String line: thinned.log()){
+				if(line.split(" ")[1].equals("transiting")){
+					thinnedTransiting++;
+				}
+				else{
+					thinnedOthers.add(line);
+				}
+			}
+			assertEquals(policy.toString(),others,thinnedOthers);
+			assertTrue(policy.toString(),thinnedTransiting > 0);
+			assertTrue(policy.toString(),thinnedTransiting*5 < transiting);
+			assertEquals(policy.toString(),transiting-thinnedTransiting,thinned.simulator.getSkippedCallbacks(DroneEvent.TRANSITING));
+		}
+	}
+
+	@Test
+	//A batch controller should hear about its drones once a round, with every event in it
+	public void testBatchController() {
+		SimulationTestParameters params = new SimulationTestParameters(3,5,60);
+		Seeded_SimulationController simController = new Seeded_SimulationController(42);
+		Set<Place> places = loadTestPlaces();
+		final Delivery_DroneController delivery = new Delivery_DroneController("Batched");
+		final List<Long> ticks = new ArrayList<Long>();
+		final long[] events = new long[1];
+		LegacyControllerAdapter adapter = new LegacyControllerAdapter(delivery){
+			@Override
+			public void droneEvents(DroneEventBatch batch, DroneDecisions decisions) {
+				ticks.add(batch.getTick());
+				events[0] += batch.size();
+				assertEquals(delivery.simulator.getClockTick(),batch.getTick());
+				super.droneEvents(batch,decisions);
+			}
+		};
+		Set<Drone> drones = loadTestDrones(params,places,adapter);
+		Set<Person> people = loadTestPeople(params,simController.getRandom(),places);
+		Simulator simulator = new Simulator(simController,people,places,drones);
+		while(simulator.tick()){
+			if(simulator.getClockTick() > FOUR_HOURS){
+				break;
+			}
+		}
+		
+		assertTrue(ticks.size() > 0);
+		for(int i = 1; i < ticks.size(); i++){
+			assertTrue(ticks.get(i) > ticks.get(i-1));
+		}
+		assertEquals(delivery.log.size(),events[0]);
+		assertTrue(simulator.getPersonCount(PersonState.ARRIVED) > 0);
+	}
+	
+	@Test
+	//Routes handed back from a batch should be applied once the batch is done
+	public void testBatchDecisions() {
+		SimulationTestParameters params = new SimulationTestParameters(1,1,1);
+		Seeded_SimulationController simController = new Seeded_SimulationController(11);
+		Set<Place> places = loadTestPlaces();
+		BatchDroneController controller = new BatchDroneController(){
+			@Override
+			public void setSimulator(Simulator simulator) {
+			}
+			@Override
+			public String getNextDroneName() {
+				return "Batch";
+			}
+			@Override
+			public String getCompanyName() {
+				return "Batch Company";
+			}
+			@Override
+			public void droneEvents(DroneEventBatch events, DroneDecisions decisions) {
+				for(int i = 0; i < events.size(); i++){
+					if(events.getEvent(i) == DroneEvent.IDLING){
+						decisions.setManifest(events.getDrone(i),new TreeSet<String>(Arrays.asList("SBCC","Nowhere")));
+						decisions.route(events.getDrone(i),"SBCC");
+					}
+				}
+			}
+		};
+		Set<Drone> drones = loadTestDrones(params,places,controller);
+		Set<Person> people = loadTestPeople(params,simController.getRandom(),places);
+		Simulator simulator = new Simulator(simController,people,places,drones);
+		Drone drone = drones.iterator().next();
+		
+		simulator.tick();
+		assertEquals("SBCC",drone.getDestination().getName());
+		//The manifest is kept as bits over the simulator's places, without the name that isn't one
+		assertSame(simulator.getPlaceNames(),drone.peekManifest().names());
+		assertEquals(Collections.singleton("SBCC"),drone.getManifest());
+		simulator.tick();
+		assertTrue(drone.getState() != DroneState.IDLING);
+	}
+
+	@Test
+	//A route to a place is kept as that place, even when another place has its name
+	public void testDecisionsKeepThePlace() {
+		Place north = new Place("Twin",new Position(34.45,-119.70,0));
+		Place south = new Place("Twin",new Position(34.40,-119.70,0));
+		DroneDecisions decisions = new DroneDecisions(new PlaceNames(new Place[]{north,south}));
+		Drone drone = new Drone(new Delivery_DroneController("Company"),north,north,1);
+
+		decisions.route(drone,south.view());
+		decisions.route(drone,north);
+		assertEquals(1,decisions.getDecision(0));
+		assertEquals(0,decisions.getDecision(1));
+		try {
+			decisions.route(drone,new Place("Twin",new Position(34.50,-119.70,0)));
+			fail("A place that isn't one of the simulator's can't be routed to");
+		} catch (IllegalArgumentException e) {
+		}
+		assertEquals(2,decisions.size());
+	}
+
+	@Test
+	//A fleet plan should be checked as a whole and take effect when the round ends
+	public void testCommandBuffer() {
+		SimulationTestParameters params = new SimulationTestParameters(2,1,1);
+		Seeded_SimulationController simController = new Seeded_SimulationController(11);
+		Set<Place> places = loadTestPlaces();
+		Set<Drone> drones = loadTestDrones(params,places,new Delivery_DroneController("Company"){
+			@Override
+			public void droneIdling(DroneView drone) {
+				//Stay put
+			}
+		});
+		Set<Person> people = loadTestPeople(params,simController.getRandom(),places);
+		Simulator simulator = new Simulator(simController,people,places,drones);
+		Drone first = drones.iterator().next();
+		Place start = first.getStart();
+		
+		int sbcc = simulator.getPlaceIndex("SBCC");
+		int candy = simulator.getPlaceIndex("Mother Stearn's Candy");
+		assertEquals("SBCC",simulator.getPlaceName(sbcc));
+		assertEquals(-1,simulator.getPlaceIndex("Nowhere"));
+		
+		//One bad command and nothing happens
+		try {
+			simulator.commands().route(first.getId(),sbcc).route("No such drone",sbcc).submit();
+			fail("A plan with an unknown drone shouldn't be accepted");
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			BitSet tooFar = new BitSet();
+			tooFar.set(places.size());
+			simulator.commands().manifest(first.getId(),tooFar).submit();
+			fail("A plan with an unknown place shouldn't be accepted");
+		} catch (IllegalArgumentException e) {
+		}
+		simulator.tick();
+		assertSame(start,first.getDestination());
+		
+		CommandBuffer plan = simulator.commands();
+		BitSet manifest = new BitSet();
+		manifest.set(sbcc);
+		manifest.set(candy);
+		for(Drone d: drones){
+			plan.route(d.getId(),(d == first) ? sbcc : candy).manifest(d.getId(),manifest);
+		}
+		plan.submit();
+		//Nothing changes until the round ends
+		assertSame(start,first.getDestination());
+		simulator.tick();
+		for(Drone d: drones){
+			assertEquals((d == first) ? "SBCC" : "Mother Stearn's Candy",d.getDestination().getName());
+			assertEquals(new TreeSet<String>(Arrays.asList("SBCC","Mother Stearn's Candy")),d.getManifest());
+		}
+		
+		try {
+			plan.submit();
+			fail("A plan can only be submitted once");
+		} catch (IllegalStateException e) {
+		}
+	}
+
+	@Test
+	//Routing and manifests look drones and places up directly and reject ones that aren't in the simulation
+	public void testRouteAndManifestLookups() {
+		SeededWorld world = new SeededWorld(3,2,2,20);
+		Simulator simulator = world.simulator;
+		Drone drone = simulator.getDrones().first();
+		
+		simulator.routeDrone(drone,"SBCC");
+		simulator.setDroneManifest(drone,new TreeSet<String>(Arrays.asList("SBCC","Nowhere","Dog Beach")));
+		
+		try {
+			simulator.routeDrone(drone,"Nowhere");
+			fail("Routing to a place that doesn't exist should fail");
+		} catch (IllegalArgumentException e) {
+		}
+		Drone stranger = new Drone(new Delivery_DroneController("Stranger"),drone.getStart(),drone.getStart(),1);
+		try {
+			simulator.routeDrone(stranger,"SBCC");
+			fail("Routing a drone that isn't in the simulation should fail");
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			simulator.setDroneManifest(stranger,"SBCC");
+			fail("Setting the manifest of a drone that isn't in the simulation should fail");
+		} catch (IllegalArgumentException e) {
+		}
+		
+		simulator.tick();
+		for(Drone d: simulator.getDrones()){
+			if(d.getId().equals(drone.getId())){
+				assertEquals("SBCC",d.getDestination().getName());
+				assertEquals(new TreeSet<String>(Arrays.asList("SBCC","Dog Beach")),d.getManifest());
+			}
+		}
+	}
+
+	@Test
+	//Running the controllers on their own threads should give the same run every time, the same as batching them on one
+	public void testConcurrentControllers() {
+		SeededWorld batched = new SeededWorld(7,4,10,100,null,null,true);
+		batched.run(FOUR_HOURS);
+		
+		for(int i = 0; i < 2; i++){
+			SeededWorld concurrent = new SeededWorld(7,4,10,100,null,null,false);
+			concurrent.simulator.setConcurrentControllers(true);
+			assertTrue(concurrent.simulator.isConcurrentControllers());
+			concurrent.run(FOUR_HOURS);
+			concurrent.simulator.setConcurrentControllers(false);
+			
+			assertEquals(batched.simulator.getClockTick(),concurrent.simulator.getClockTick());
+			assertEquals(batched.results(),concurrent.results());
+			assertEquals(batched.log(),concurrent.log());
+		}
+	}
+	
+	@Test
+	public void testControllerWatchdog() {
+		SeededWorld unwatched = new SeededWorld(42,2,3,60);
+		unwatched.run(FOUR_HOURS);
+		
+		//Timing the controllers doesn't change what happens
+		SeededWorld watched = new SeededWorld(42,2,3,60);
+		ControllerWatchdog watchdog = watched.simulator.getWatchdog();
+		assertFalse(watchdog.isEnabled());
+		watchdog.setEnabled(true);
+		watched.run(FOUR_HOURS);
+		assertEquals(unwatched.results(),watched.results());
+		assertEquals(unwatched.log(),watched.log());
+		assertEquals(2,watchdog.getControllerCount());
+		assertEquals("Company 0",watchdog.getControllerName(0));
+		long calls = 0;
+		for(int i = 0; i < watchdog.getControllerCount(); i++){
+			for(DroneEvent event: DroneEvent.values()){
+				calls += watchdog.getCallCount(i,event);
+			}
+			assertEquals(0,watchdog.getOverBudgetRounds(i));
+			assertFalse(watchdog.isDisqualified(i));
+		}
+		assertEquals(watched.log().size(),calls);
+		assertTrue(watchdog.getCallCount(0,DroneEvent.EMBARKING_START) > 0);
+		assertTrue(watchdog.getPercentileNanos(0,DroneEvent.EMBARKING_START,0.99) >= watchdog.getPercentileNanos(0,DroneEvent.EMBARKING_START,0.5));
+		assertTrue(watchdog.report().contains("Company 1"));
+		
+		//No controller can do anything in a nanosecond
+		SeededWorld skipped = new SeededWorld(42,2,3,60);
+		skipped.simulator.getWatchdog().setBudget(1,BudgetPolicy.SKIP);
+		for(int i = 0; (i < 1000) && skipped.simulator.tick(); i++);
+		for(int i = 0; i < 2; i++){
+			assertTrue(skipped.simulator.getWatchdog().getOverBudgetRounds(i) > 0);
+			assertTrue(skipped.simulator.getWatchdog().getDroppedCallbacks(i) > 0);
+			assertFalse(skipped.simulator.getWatchdog().isDisqualified(i));
+		}
+		
+		SeededWorld disqualified = new SeededWorld(42,2,3,60);
+		watchdog = disqualified.simulator.getWatchdog();
+		watchdog.setBudget(1,BudgetPolicy.DISQUALIFY);
+		disqualified.simulator.setConcurrentControllers(true);
+		for(int i = 0; (i < 10) && disqualified.simulator.tick(); i++);
+		int heard = disqualified.log().size();
+		for(int i = 0; (i < 1000) && disqualified.simulator.tick(); i++);
+		disqualified.simulator.setConcurrentControllers(false);
+		assertEquals(heard,disqualified.log().size());
+		for(int i = 0; i < 2; i++){
+			assertTrue(watchdog.isDisqualified(i));
+			assertEquals(1,watchdog.getOverBudgetRounds(i));
+			assertTrue(watchdog.getDroppedCallbacks(i) > 0);
+		}
+		assertTrue(watchdog.report().contains("disqualified"));
+	}
+	
+	@Test
+	public void testRemoteController() throws InterruptedException {
+		SeededWorld local = new SeededWorld(42,2,3,60,null,null,true);
+		local.run(FOUR_HOURS);
+		
+		//Each controller is hosted on a thread of its own here rather than in another JVM, the channel is the same
+		List<RemoteDroneController> remotes = new ArrayList<RemoteDroneController>();
+		List<Thread> hosts = new ArrayList<Thread>();
+		SeededWorld remote = new SeededWorld(42,2,3,60,null,null,controller -> {
+			try {
+				File channel = File.createTempFile("controller",".ring");
+				channel.deleteOnExit();
+				ControllerHost host = new ControllerHost(channel,controller);
+				Thread thread = new Thread(host::run);
+				thread.setDaemon(true);
+				thread.start();
+				hosts.add(thread);
+				RemoteDroneController proxy = new RemoteDroneController(channel);
+				remotes.add(proxy);
+				return proxy;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+		remote.run(FOUR_HOURS);
+		
+		assertEquals(local.simulator.getClockTick(),remote.simulator.getClockTick());
+		assertEquals(local.results(),remote.results());
+		assertEquals(local.log(),remote.log());
+		for(RemoteDroneController proxy: remotes){
+			assertTrue(proxy.isRunning());
+			assertTrue(proxy.getRoundTrips() > 0);
+			proxy.close();
+			assertFalse(proxy.isRunning());
+		}
+		for(Thread host: hosts){
+			host.join(1000);
+			assertFalse(host.isAlive());
+		}
+	}
+
 }
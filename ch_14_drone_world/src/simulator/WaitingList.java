@@ -0,0 +1,746 @@
+package simulator;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+
+/**
+ * The people waiting at a place, in the order they will board.  It is the LinkedList it has always been to anyone
+ * outside the package, but the people are kept in entries of its own: besides the queue everyone is in, each
+ * destination has a queue of its own running through the same entries.  So the people going to the places on a
+ * manifest can be found without looking at anyone else and taken out without searching for them.
+ * Destinations are numbered by the place table the simulator gives the list, see setNames.
+ * The copies of places the simulator shares between controllers have read-only waiting lists.
+ */
+final class WaitingList extends LinkedList<Person> {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final class Entry {
+		final Person person;
+		//The index of the place the person is going to, -1 if it isn't one of the places
+		int destination;
+		//Goes up from the front of the queue to the back, so the queues by destination can be merged back into order
+		long order;
+		Entry previous;
+		Entry next;
+		Entry previousSame;
+		Entry nextSame;
+
+		Entry(Person person,int destination){
+			this.person = person;
+			this.destination = destination;
+		}
+	}
+
+	//The queue itself, shared with the read-only list handed out with the live copies of places
+	private static final class Line {
+		PlaceNames names = PlaceNames.NONE;
+		Entry first;
+		Entry last;
+		int size;
+		//The front and back of the queue for each destination, by the destination's index
+		Entry[] firsts = new Entry[0];
+		Entry[] lasts = new Entry[0];
+		//The destinations someone here is going to
+		final BitSet going = new BitSet();
+		//Goes up with every change, so iterators over either list notice changes made through the other
+		int changes;
+		WaitingList view;
+	}
+
+	private final Line queue;
+	//Scratch space for take, the queues for the places on a manifest
+	private Entry[] heads = new Entry[0];
+	//Whether changes are refused
+	private boolean readOnly;
+
+	WaitingList(){
+		queue = new Line();
+	}
+
+	WaitingList(Collection<? extends Person> people){
+		this();
+		if(people instanceof WaitingList){
+			setNames(((WaitingList) people).queue.names);
+		}
+		for(Person person: people){
+			link(person,null);
+		}
+	}
+
+	//A read-only list over another's queue
+	private WaitingList(Line queue){
+		this.queue = queue;
+		this.readOnly = true;
+	}
+
+	/**
+	 * Number the destinations by these places from now on, the simulator does this once for each of its places
+	 */
+	void setNames(PlaceNames names){
+		checkWritable();
+		queue.names = names;
+		queue.firsts = new Entry[queue.names.size()];
+		queue.lasts = new Entry[queue.names.size()];
+		queue.going.clear();
+		for(Entry entry = queue.first; entry != null; entry = entry.next){
+			entry.destination = destinationOf(entry.person);
+			entry.previousSame = null;
+			entry.nextSame = null;
+			if(entry.destination >= 0){
+				Entry same = queue.lasts[entry.destination];
+				entry.previousSame = same;
+				if(same == null){
+					queue.firsts[entry.destination] = entry;
+					queue.going.set(entry.destination);
+				}
+				else{
+					same.nextSame = entry;
+				}
+				queue.lasts[entry.destination] = entry;
+			}
+		}
+	}
+
+	/**
+	 * @return a list that can't be changed but always has the same people in it as this one
+	 */
+	WaitingList readOnlyView(){
+		if(queue.view == null){
+			queue.view = new WaitingList(queue);
+		}
+		return queue.view;
+	}
+
+	/**
+	 * Refuse any change from now on
+	 */
+	void makeReadOnly(){
+		readOnly = true;
+	}
+
+	private void checkWritable(){
+		if(readOnly){
+			throw new UnsupportedOperationException("The people waiting at a shared copy of a place can't be changed");
+		}
+	}
+
+	/**
+	 * @return true if anyone here is queue.going to one of these places, or if anyone is here at all for null
+	 */
+	boolean anyGoingTo(Manifest places){
+		if(places == null){
+			return queue.size > 0;
+		}
+		if(places.names() == queue.names){
+			return places.intersects(queue.going);
+		}
+		for(int place = places.nextPlace(0); place >= 0; place = places.nextPlace(place + 1)){
+			int index = destinationOf(places,place);
+			if((index >= 0) && (queue.firsts[index] != null)){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Take people queue.going to these places out of the queue, those who have waited longest queue.first.  Only the queues
+	 * for the places on the manifest are looked at.
+	 * @param places where they are queue.going, null for everyone
+	 * @param count the most people to take
+	 * @param into where to put them, in the order they were waiting
+	 * @return how many were taken
+	 */
+	int take(Manifest places,int count,Collection<Person> into){
+		checkWritable();
+		int taken = 0;
+		if(places == null){
+			while((taken < count) && (queue.first != null)){
+				into.add(queue.first.person);
+				unlink(queue.first);
+				taken++;
+			}
+			return taken;
+		}
+		int queues = 0;
+		for(int place = places.nextPlace(0); place >= 0; place = places.nextPlace(place + 1)){
+			int index = destinationOf(places,place);
+			if((index >= 0) && (queue.firsts[index] != null)){
+				if(queues == heads.length){
+					heads = Arrays.copyOf(heads,Math.max(4,2*heads.length));
+				}
+				heads[queues++] = queue.firsts[index];
+			}
+		}
+		while(taken < count){
+			int next = -1;
+			for(int i = 0; i < queues; i++){
+				if((heads[i] != null) && ((next < 0) || (heads[i].order < heads[next].order))){
+					next = i;
+				}
+			}
+			if(next < 0){
+				break;
+			}
+			Entry entry = heads[next];
+			heads[next] = entry.nextSame;
+			into.add(entry.person);
+			unlink(entry);
+			taken++;
+		}
+		Arrays.fill(heads,0,queues,null);
+		return taken;
+	}
+
+	/**
+	 * @return the index of the place a person is queue.going to, -1 if it isn't a place
+	 */
+	private int destinationOf(Person person){
+		return (person == null) ? -1 : queue.names.indexOf(person.getDestination());
+	}
+
+	/**
+	 * @return this list's index for a place on a manifest, which is the same index unless the manifest is over
+	 * another simulator's places
+	 */
+	private int destinationOf(Manifest places,int place){
+		if(places.names() == queue.names){
+			return place;
+		}
+		return queue.names.indexOf(places.names().nameOf(place));
+	}
+
+	/**
+	 * @return the queue.first entry for this person, only looking at the people queue.going where they are
+	 */
+	private Entry find(Object o){
+		if(!(o instanceof Person)){
+			for(Entry entry = queue.first; entry != null; entry = entry.next){
+				if((o == null) ? (entry.person == null) : o.equals(entry.person)){
+					return entry;
+				}
+			}
+			return null;
+		}
+		int index = destinationOf((Person) o);
+		Entry entry = (index < 0) ? queue.first : queue.firsts[index];
+		for(; entry != null; entry = (index < 0) ? entry.next : entry.nextSame){
+			if(o.equals(entry.person)){
+				return entry;
+			}
+		}
+		return null;
+	}
+
+	private Entry entry(int index){
+		if((index < 0) || (index >= queue.size)){
+			throw new IndexOutOfBoundsException("Index: "+index+", Size: "+queue.size);
+		}
+		Entry entry;
+		if(index < queue.size/2){
+			entry = queue.first;
+			for(int i = 0; i < index; i++){
+				entry = entry.next;
+			}
+		}
+		else{
+			entry = queue.last;
+			for(int i = queue.size - 1; i > index; i--){
+				entry = entry.previous;
+			}
+		}
+		return entry;
+	}
+
+	private void checkPosition(int index){
+		if((index < 0) || (index > queue.size)){
+			throw new IndexOutOfBoundsException("Index: "+index+", Size: "+queue.size);
+		}
+	}
+
+	/**
+	 * Put a person in the queue in front of an entry, at the back for null
+	 */
+	private void link(Person person,Entry before){
+		Entry entry = new Entry(person,destinationOf(person));
+
+		Entry after = (before == null) ? queue.last : before.previous;
+		entry.previous = after;
+		entry.next = before;
+		if(after == null){
+			queue.first = entry;
+		}
+		else{
+			after.next = entry;
+		}
+		if(before == null){
+			queue.last = entry;
+		}
+		else{
+			before.previous = entry;
+		}
+
+		//Keep the order queue.going up, making room after the new entry if there isn't any
+		if(after == null){
+			entry.order = (before == null) ? 0 : before.order - 1;
+		}
+		else{
+			entry.order = after.order + 1;
+			for(Entry e = before; (e != null) && (e.order <= e.previous.order); e = e.next){
+				e.order = e.previous.order + 1;
+			}
+		}
+
+		//Its place in the queue for its destination is after the queue.last one in front of it queue.going there too
+		if(entry.destination >= 0){
+			Entry same = after;
+			if(before != null){
+				while((same != null) && (same.destination != entry.destination)){
+					same = same.previous;
+				}
+			}
+			else{
+				same = queue.lasts[entry.destination];
+			}
+			entry.previousSame = same;
+			entry.nextSame = (same == null) ? queue.firsts[entry.destination] : same.nextSame;
+			if(same == null){
+				queue.firsts[entry.destination] = entry;
+			}
+			else{
+				same.nextSame = entry;
+			}
+			if(entry.nextSame == null){
+				queue.lasts[entry.destination] = entry;
+			}
+			else{
+				entry.nextSame.previousSame = entry;
+			}
+			queue.going.set(entry.destination);
+		}
+
+		queue.size++;
+		queue.changes++;
+		modCount++;
+	}
+
+	private void unlink(Entry entry){
+		if(entry.previous == null){
+			queue.first = entry.next;
+		}
+		else{
+			entry.previous.next = entry.next;
+		}
+		if(entry.next == null){
+			queue.last = entry.previous;
+		}
+		else{
+			entry.next.previous = entry.previous;
+		}
+		if(entry.destination >= 0){
+			if(entry.previousSame == null){
+				queue.firsts[entry.destination] = entry.nextSame;
+			}
+			else{
+				entry.previousSame.nextSame = entry.nextSame;
+			}
+			if(entry.nextSame == null){
+				queue.lasts[entry.destination] = entry.previousSame;
+			}
+			else{
+				entry.nextSame.previousSame = entry.previousSame;
+			}
+			if(queue.firsts[entry.destination] == null){
+				queue.going.clear(entry.destination);
+			}
+		}
+		queue.size--;
+		queue.changes++;
+		modCount++;
+	}
+
+	@Override
+	public int size() {
+		return queue.size;
+	}
+
+	@Override
+	public boolean add(Person person) {
+		checkWritable();
+		link(person,null);
+		return true;
+	}
+
+	@Override
+	public void add(int index, Person person) {
+		checkWritable();
+		checkPosition(index);
+		link(person,(index == queue.size) ? null : entry(index));
+	}
+
+	@Override
+	public boolean addAll(Collection<? extends Person> people) {
+		return addAll(queue.size,people);
+	}
+
+	@Override
+	public boolean addAll(int index, Collection<? extends Person> people) {
+		checkWritable();
+		checkPosition(index);
+		Object[] adding = people.toArray();
+		Entry before = (index == queue.size) ? null : entry(index);
+		for(Object person: adding){
+			link((Person) person,before);
+		}
+		return adding.length > 0;
+	}
+
+	@Override
+	public void addFirst(Person person) {
+		checkWritable();
+		link(person,queue.first);
+	}
+
+	@Override
+	public void addLast(Person person) {
+		checkWritable();
+		link(person,null);
+	}
+
+	@Override
+	public Person get(int index) {
+		return entry(index).person;
+	}
+
+	@Override
+	public Person set(int index, Person person) {
+		checkWritable();
+		//The person may be queue.going somewhere else, so they are put in afresh where the old one was
+		Entry replaced = entry(index);
+		link(person,replaced);
+		unlink(replaced);
+		return replaced.person;
+	}
+
+	@Override
+	public Person getFirst() {
+		if(queue.first == null){
+			throw new NoSuchElementException();
+		}
+		return queue.first.person;
+	}
+
+	@Override
+	public Person getLast() {
+		if(queue.last == null){
+			throw new NoSuchElementException();
+		}
+		return queue.last.person;
+	}
+
+	@Override
+	public Person peek() {
+		return peekFirst();
+	}
+
+	@Override
+	public Person peekFirst() {
+		return (queue.first == null) ? null : queue.first.person;
+	}
+
+	@Override
+	public Person peekLast() {
+		return (queue.last == null) ? null : queue.last.person;
+	}
+
+	@Override
+	public Person remove(int index) {
+		checkWritable();
+		Entry entry = entry(index);
+		unlink(entry);
+		return entry.person;
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		checkWritable();
+		Entry entry = find(o);
+		if(entry == null){
+			return false;
+		}
+		unlink(entry);
+		return true;
+	}
+
+	@Override
+	public Person removeFirst() {
+		checkWritable();
+		Person person = getFirst();
+		unlink(queue.first);
+		return person;
+	}
+
+	@Override
+	public Person removeLast() {
+		checkWritable();
+		Person person = getLast();
+		unlink(queue.last);
+		return person;
+	}
+
+	@Override
+	public boolean removeLastOccurrence(Object o) {
+		checkWritable();
+		for(Entry entry = queue.last; entry != null; entry = entry.previous){
+			if((o == null) ? (entry.person == null) : o.equals(entry.person)){
+				unlink(entry);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public Person poll() {
+		return pollFirst();
+	}
+
+	@Override
+	public Person pollFirst() {
+		checkWritable();
+		return (queue.first == null) ? null : removeFirst();
+	}
+
+	@Override
+	public Person pollLast() {
+		checkWritable();
+		return (queue.last == null) ? null : removeLast();
+	}
+
+	@Override
+	public void clear() {
+		checkWritable();
+		queue.first = null;
+		queue.last = null;
+		queue.size = 0;
+		Arrays.fill(queue.firsts,null);
+		Arrays.fill(queue.lasts,null);
+		queue.going.clear();
+		queue.changes++;
+		modCount++;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return find(o) != null;
+	}
+
+	@Override
+	public int indexOf(Object o) {
+		int index = 0;
+		for(Entry entry = queue.first; entry != null; entry = entry.next, index++){
+			if((o == null) ? (entry.person == null) : o.equals(entry.person)){
+				return index;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public int lastIndexOf(Object o) {
+		int index = queue.size - 1;
+		for(Entry entry = queue.last; entry != null; entry = entry.previous, index--){
+			if((o == null) ? (entry.person == null) : o.equals(entry.person)){
+				return index;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public Object[] toArray() {
+		Object[] people = new Object[queue.size];
+		int i = 0;
+		for(Entry entry = queue.first; entry != null; entry = entry.next){
+			people[i++] = entry.person;
+		}
+		return people;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <T> T[] toArray(T[] a) {
+		if(a.length < queue.size){
+			a = (T[]) java.lang.reflect.Array.newInstance(a.getClass().getComponentType(),queue.size);
+		}
+		int i = 0;
+		for(Entry entry = queue.first; entry != null; entry = entry.next){
+			a[i++] = (T) entry.person;
+		}
+		if(a.length > queue.size){
+			a[queue.size] = null;
+		}
+		return a;
+	}
+
+	@Override
+	public ListIterator<Person> listIterator(int index) {
+		checkPosition(index);
+		return new Walker(index);
+	}
+
+	@Override
+	public Iterator<Person> descendingIterator() {
+		final Walker walker = new Walker(queue.size);
+		return new Iterator<Person>(){
+
+			@Override
+			public boolean hasNext() {
+				return walker.hasPrevious();
+			}
+
+			@Override
+			public Person next() {
+				return walker.previous();
+			}
+
+			@Override
+			public void remove() {
+				walker.remove();
+			}
+		};
+	}
+
+	@Override
+	public Spliterator<Person> spliterator() {
+		return Spliterators.spliterator(this,Spliterator.ORDERED);
+	}
+
+	@Override
+	public Object clone() {
+		return new WaitingList(this);
+	}
+
+	//LinkedList would write out its own, empty, nodes
+	private Object writeReplace() {
+		return new LinkedList<Person>(this);
+	}
+
+	private class Walker implements ListIterator<Person> {
+
+		private Entry next;
+		private Entry lastReturned;
+		private int nextIndex;
+		private int expectedChanges = queue.changes;
+
+		Walker(int index){
+			next = (index == queue.size) ? null : entry(index);
+			nextIndex = index;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return nextIndex < queue.size;
+		}
+
+		@Override
+		public Person next() {
+			checkForChanges();
+			if(!hasNext()){
+				throw new NoSuchElementException();
+			}
+			lastReturned = next;
+			next = next.next;
+			nextIndex++;
+			return lastReturned.person;
+		}
+
+		@Override
+		public boolean hasPrevious() {
+			return nextIndex > 0;
+		}
+
+		@Override
+		public Person previous() {
+			checkForChanges();
+			if(!hasPrevious()){
+				throw new NoSuchElementException();
+			}
+			next = (next == null) ? queue.last : next.previous;
+			lastReturned = next;
+			nextIndex--;
+			return lastReturned.person;
+		}
+
+		@Override
+		public int nextIndex() {
+			return nextIndex;
+		}
+
+		@Override
+		public int previousIndex() {
+			return nextIndex - 1;
+		}
+
+		@Override
+		public void remove() {
+			checkWritable();
+			checkForChanges();
+			if(lastReturned == null){
+				throw new IllegalStateException();
+			}
+			if(next == lastReturned){
+				next = lastReturned.next;
+			}
+			else{
+				nextIndex--;
+			}
+			unlink(lastReturned);
+			lastReturned = null;
+			expectedChanges = queue.changes;
+		}
+
+		@Override
+		public void set(Person person) {
+			checkWritable();
+			checkForChanges();
+			if(lastReturned == null){
+				throw new IllegalStateException();
+			}
+			Entry replaced = lastReturned;
+			link(person,replaced);
+			lastReturned = replaced.previous;
+			if(next == replaced){
+				next = lastReturned;
+			}
+			unlink(replaced);
+			expectedChanges = queue.changes;
+		}
+
+		@Override
+		public void add(Person person) {
+			checkWritable();
+			checkForChanges();
+			lastReturned = null;
+			link(person,next);
+			nextIndex++;
+			expectedChanges = queue.changes;
+		}
+
+		private void checkForChanges(){
+			if(queue.changes != expectedChanges){
+				throw new ConcurrentModificationException();
+			}
+		}
+	}
+
+}
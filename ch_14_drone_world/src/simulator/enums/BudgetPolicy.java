@@ -0,0 +1,11 @@
+package simulator.enums;
+
+/** What the watchdog does to a controller that uses more than its time budget in a round */
+public enum BudgetPolicy {
+	//Say so and carry on
+	WARN,
+	//Drop the controller's call backs for the next round
+	SKIP,
+	//Drop all of the controller's call backs for the rest of the run
+	DISQUALIFY;
+}
@@ -0,0 +1,15 @@
+package simulator.enums;
+
+/** How the simulation clock paces rounds against the wall clock */
+public enum ClockMode {
+	//One simulated second per real second
+	REAL_TIME,
+	//A set number of simulated seconds per real second
+	SCALED,
+	//As fast as the rounds can be run
+	MAX_SPEED,
+	//No rounds run until the mode changes
+	PAUSED,
+	//Run the rounds asked for with step() then wait
+	STEP;
+}
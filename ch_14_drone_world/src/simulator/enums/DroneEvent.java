@@ -0,0 +1,26 @@
+package simulator.enums;
+
+/** The life cycle call backs on a DroneController, so a controller can say which ones it wants */
+public enum DroneEvent {
+	EMBARKING_START,
+	EMBARKING_A_GROUP_START,
+	EMBARKING_A_GROUP_END,
+	EMBARKING_END,
+	ASCENDING_START,
+	ASCENDING_END,
+	TRANSITING_START,
+	TRANSITING,
+	TRANSITING_END,
+	EXPLODING,
+	HAS_DIED,
+	DESCENDING_START,
+	DESCENDING_END,
+	DISEMBARKING_START,
+	DISEMBARKING_GROUP_START,
+	DISEMBARKING_GROUP_END,
+	DISEMBARKING_END,
+	RECHARGING_START,
+	RECHARGING,
+	DONE_RECHARGING,
+	IDLING;
+}
@@ -0,0 +1,15 @@
+package simulator.enums;
+
+/** How a run of the simulator came to an end */
+public enum SimulationOutcome {
+	//Still going
+	RUNNING,
+	//Every person has either arrived or died
+	FINISHED,
+	//Every drone is dead so no one else can be delivered
+	NO_DRONES_LEFT,
+	//Someone called end()
+	QUIT,
+	//Nothing happened for too long, see Simulator.setStallTimeout
+	STALLED;
+}
@@ -0,0 +1,50 @@
+package simulator.interfaces;
+
+import simulator.Drone;
+import simulator.DroneDecisions;
+import simulator.DroneEventBatch;
+
+/**
+ * A controller that hears about its drones once a round instead of once per event.
+ * At the end of each round in which any of its drones had a subscribed event, the simulator calls droneEvents
+ * with all of them in order and then applies the decisions it made.  The one-event call backs are never made,
+ * so they do nothing here.  Use LegacyControllerAdapter to run an ordinary DroneController this way.
+ */
+public interface BatchDroneController extends DroneController {
+	
+	/**
+	 * @param events what happened to this controller's drones this round, in order
+	 * @param decisions where to record routes and manifests, applied in order when this returns
+	 */
+	void droneEvents(DroneEventBatch events,DroneDecisions decisions);
+	
+	default void droneEmbarkingStart(Drone drone){}
+	default void droneEmbarkingAGroupStart(Drone drone){}
+	default void droneEmbarkingAGroupEnd(Drone drone){}
+	default void droneEmbarkingEnd(Drone drone){}
+	
+	default void droneAscendingStart(Drone drone){}
+	default void droneAscendingEnd(Drone drone){}
+	
+	default void droneTransitingStart(Drone drone){}
+	default void droneTransiting(Drone drone,double percent){}
+	default void droneTransitingEnd(Drone drone){}
+	
+	default void droneExploding(Drone drone){}
+	default void droneHasDied(Drone drone){}
+	
+	default void droneDescendingStart(Drone drone){}
+	default void droneDescendingEnd(Drone drone){}
+	
+	default void droneDisembarkingStart(Drone drone){}
+	default void droneDisembarkingGroupStart(Drone drone){}
+	default void droneDisembarkingGroupEnd(Drone drone){}
+	default void droneDisembarkingEnd(Drone drone){}
+	
+	default void droneRechargingStart(Drone drone){}
+	default void droneRecharging(Drone drone,double percent){}
+	default void droneDoneRecharging(Drone drone){}
+	
+	default void droneIdling(Drone drone){}
+
+}
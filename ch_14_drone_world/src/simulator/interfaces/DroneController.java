@@ -1,7 +1,12 @@
 package simulator.interfaces;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 import simulator.Drone;
+import simulator.ProgressPolicy;
 import simulator.Simulator;
+import simulator.enums.DroneEvent;
 
 public interface DroneController {
 	
@@ -12,7 +17,28 @@ public interface DroneController {
 	 */
 	void setSimulator(Simulator simulator);
 	
-	/* Life cycle call backs */
+	/**
+	 * Which life cycle call backs this controller wants.  The simulator asks once, right after setSimulator, and
+	 * doesn't make the calls that aren't in the set.  By default every call back is made.
+	 * @return the events to be told about
+	 */
+	default Set<DroneEvent> getSubscribedEvents(){
+		return EnumSet.allOf(DroneEvent.class);
+	}
+	
+	/**
+	 * How often droneTransiting should be called for this controller's drones, asked once along with
+	 * getSubscribedEvents.  By default it is called every round.
+	 * @return the policy to use
+	 */
+	default ProgressPolicy getTransitProgressPolicy(){
+		return ProgressPolicy.everyTick();
+	}
+	
+	/* Life cycle call backs
+	 * The drone passed in can't be changed and reads the simulator's live state, so it is only good until the
+	 * call back returns.  Use drone.snapshot() to keep a copy.  See DroneViewController for call backs that
+	 * take a DroneView instead. */
 	void droneEmbarkingStart(Drone drone);
 	void droneEmbarkingAGroupStart(Drone drone);
 	void droneEmbarkingAGroupEnd(Drone drone);
@@ -24,7 +50,7 @@ public interface DroneController {
 	void droneTransitingStart(Drone drone);
 	/**
 	 * Intermediate notification of transit progress.
-	 * @param drone, A copy of the drone that is transiting
+	 * @param drone, The drone that is transiting
 	 * @param percent, How far along *original* trip the drone has gone.  If the drone is rerouted midstream to a destination further away than the original destination,
 	 * then this can be greater than 100.
 	 */
@@ -0,0 +1,54 @@
+package simulator.interfaces;
+
+import java.util.Set;
+
+import simulator.Drone;
+import simulator.Person;
+import simulator.Position;
+import simulator.enums.DroneState;
+
+/**
+ * A read-only look at a drone.  The views handed to controller callbacks read the simulator's live state, so
+ * they are only good for the duration of the callback and none of their sets can be changed.  Call snapshot() to
+ * keep a copy.  A Drone is its own view.
+ */
+public interface DroneView {
+	
+	String getId();
+	String getName();
+	String getCompanyName();
+	
+	PlaceView getStart();
+	PlaceView getDestination();
+	Position getPosition();
+	Set<String> getManifest();
+	DroneState getState();
+	
+	long getEmbarkingStart();
+	int getEmbarkingDuration();
+	int getEmbarkingCapacity();
+	Set<Person> getEmbarkers();
+	
+	long getDisembarkingStart();
+	int getDisembarkingDuration();
+	Set<Person> getDisembarkers();
+	
+	long getAscensionTime();
+	long getDescensionTime();
+	long getTransitStart();
+	long getTransitEnd();
+	
+	double getCharge();
+	double getRechargeRate();
+	double getDischargeRate();
+	
+	int getCapacity();
+	Set<Person> getPassengers();
+	double getSpeed();
+	
+	/**
+	 * @return a copy of the drone as it is now, which won't change as the simulation goes on
+	 */
+	Drone snapshot();
+
+}
@@ -0,0 +1,112 @@
+package simulator.interfaces;
+
+import simulator.Drone;
+
+/**
+ * A controller whose call backs take a DroneView, the read-only part of a drone.  The simulator still makes the
+ * call backs that take a Drone, and here they pass the drone on to these.  The views read the simulator's live
+ * state, so they are only good until the call back returns.  Use drone.snapshot() to keep a copy.
+ */
+public interface DroneViewController extends DroneController {
+	
+	void droneEmbarkingStart(DroneView drone);
+	void droneEmbarkingAGroupStart(DroneView drone);
+	void droneEmbarkingAGroupEnd(DroneView drone);
+	void droneEmbarkingEnd(DroneView drone);
+	
+	void droneAscendingStart(DroneView drone);
+	void droneAscendingEnd(DroneView drone);
+	
+	void droneTransitingStart(DroneView drone);
+	void droneTransiting(DroneView drone,double percent);
+	void droneTransitingEnd(DroneView drone);
+	
+	void droneExploding(DroneView drone);
+	void droneHasDied(DroneView drone);
+	
+	void droneDescendingStart(DroneView drone);
+	void droneDescendingEnd(DroneView drone);
+	
+	void droneDisembarkingStart(DroneView drone);
+	void droneDisembarkingGroupStart(DroneView drone);
+	void droneDisembarkingGroupEnd(DroneView drone);
+	void droneDisembarkingEnd(DroneView drone);
+	
+	void droneRechargingStart(DroneView drone);
+	void droneRecharging(DroneView drone,double percent);
+	void droneDoneRecharging(DroneView drone);
+	
+	void droneIdling(DroneView drone);
+	
+	default void droneEmbarkingStart(Drone drone){
+		droneEmbarkingStart((DroneView) drone);
+	}
+	default void droneEmbarkingAGroupStart(Drone drone){
+		droneEmbarkingAGroupStart((DroneView) drone);
+	}
+	default void droneEmbarkingAGroupEnd(Drone drone){
+		droneEmbarkingAGroupEnd((DroneView) drone);
+	}
+	default void droneEmbarkingEnd(Drone drone){
+		droneEmbarkingEnd((DroneView) drone);
+	}
+	
+	default void droneAscendingStart(Drone drone){
+		droneAscendingStart((DroneView) drone);
+	}
+	default void droneAscendingEnd(Drone drone){
+		droneAscendingEnd((DroneView) drone);
+	}
+	
+	default void droneTransitingStart(Drone drone){
+		droneTransitingStart((DroneView) drone);
+	}
+	default void droneTransiting(Drone drone,double percent){
+		droneTransiting((DroneView) drone,percent);
+	}
+	default void droneTransitingEnd(Drone drone){
+		droneTransitingEnd((DroneView) drone);
+	}
+	
+	default void droneExploding(Drone drone){
+		droneExploding((DroneView) drone);
+	}
+	default void droneHasDied(Drone drone){
+		droneHasDied((DroneView) drone);
+	}
+	
+	default void droneDescendingStart(Drone drone){
+		droneDescendingStart((DroneView) drone);
+	}
+	default void droneDescendingEnd(Drone drone){
+		droneDescendingEnd((DroneView) drone);
+	}
+	
+	default void droneDisembarkingStart(Drone drone){
+		droneDisembarkingStart((DroneView) drone);
+	}
+	default void droneDisembarkingGroupStart(Drone drone){
+		droneDisembarkingGroupStart((DroneView) drone);
+	}
+	default void droneDisembarkingGroupEnd(Drone drone){
+		droneDisembarkingGroupEnd((DroneView) drone);
+	}
+	default void droneDisembarkingEnd(Drone drone){
+		droneDisembarkingEnd((DroneView) drone);
+	}
+	
+	default void droneRechargingStart(Drone drone){
+		droneRechargingStart((DroneView) drone);
+	}
+	default void droneRecharging(Drone drone,double percent){
+		droneRecharging((DroneView) drone,percent);
+	}
+	default void droneDoneRecharging(Drone drone){
+		droneDoneRecharging((DroneView) drone);
+	}
+	
+	default void droneIdling(Drone drone){
+		droneIdling((DroneView) drone);
+	}
+
+}
@@ -0,0 +1,32 @@
+package simulator.interfaces;
+
+import java.util.List;
+
+import simulator.Person;
+import simulator.Place;
+import simulator.Position;
+
+/**
+ * A read-only look at a place.  The views handed to controller callbacks read the simulator's live state, so
+ * they are only good for the duration of the callback.  Call snapshot() to keep a copy.  A Place is its own view.
+ */
+public interface PlaceView {
+	
+	String getName();
+	
+	/**
+	 * @return where the place is
+	 */
+	Position getPosition();
+	
+	/**
+	 * @return the people waiting here, in the order they will board
+	 */
+	List<Person> getWaitingToEmbark();
+	
+	/**
+	 * @return a copy of the place as it is now, which won't change as the simulation goes on
+	 */
+	Place snapshot();
+
+}
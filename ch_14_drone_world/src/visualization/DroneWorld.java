@@ -3,6 +3,7 @@ package visualization;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Random;
@@ -52,7 +53,9 @@ import simulator.Pair;
 import simulator.Person;
 import simulator.Place;
 import simulator.Position;
+import simulator.SimClock;
 import simulator.Simulator;
+import simulator.enums.ClockMode;
 import simulator.enums.PersonState;
 
 /**
@@ -88,7 +91,8 @@ public class DroneWorld extends SimpleApplication implements AnimEventListener {
 		if (people == null) {
 			throw new IllegalArgumentException("\"people\" can't be null");
 		}
-		this.people = new HashMap<Person, Spatial>();
+		//The simulator's own people, so they are keyed by who they are
+		this.people = new IdentityHashMap<Person, Spatial>();
 		for (Person person : people) {
 			this.people.put(person, null);
 		}
@@ -457,7 +461,7 @@ public class DroneWorld extends SimpleApplication implements AnimEventListener {
 	@Override
 	public void simpleUpdate(float tpf) {
 		
-		int numNinjasWaiting = 0;
+		int numNinjasWaiting = simulator.getPersonCount(PersonState.WAITING);
 		Map<String, Integer> droneDeliveries = new TreeMap<String,Integer>();
 		Map<String, Integer> droneFlying = new TreeMap<String,Integer>();
 		Map<String, Integer> droneDeaths = new TreeMap<String,Integer>();
@@ -470,7 +474,6 @@ public class DroneWorld extends SimpleApplication implements AnimEventListener {
 			
 			switch (personEntry.getKey().getState()) {
 			case WAITING: {
-				numNinjasWaiting++;
 				personEntry.getValue().setLocalTranslation(latLong2Transform(person.getPosition().getLatitude(),
 						person.getPosition().getLongitude(), person.getPosition().getHeight()));
 			}
@@ -814,7 +817,53 @@ public class DroneWorld extends SimpleApplication implements AnimEventListener {
 		inputManager.addListener(actionListener, "Idle2");
 		inputManager.addMapping("Idle3", new KeyTrigger(KeyInput.KEY_3));
 		inputManager.addListener(actionListener, "Idle3");
+		
+		//Simulation clock: pause/resume, single step, real time, faster, slower and as fast as possible
+		inputManager.addMapping("Pause", new KeyTrigger(KeyInput.KEY_P));
+		inputManager.addMapping("Step", new KeyTrigger(KeyInput.KEY_N));
+		inputManager.addMapping("RealTime", new KeyTrigger(KeyInput.KEY_T));
+		inputManager.addMapping("Faster", new KeyTrigger(KeyInput.KEY_EQUALS));
+		inputManager.addMapping("Slower", new KeyTrigger(KeyInput.KEY_MINUS));
+		inputManager.addMapping("MaxSpeed", new KeyTrigger(KeyInput.KEY_X));
+		inputManager.addListener(clockListener, "Pause", "Step", "RealTime", "Faster", "Slower", "MaxSpeed");
 	}
+	
+	private ActionListener clockListener = new ActionListener() {
+		//What to go back to when unpausing
+		private ClockMode resumeMode = ClockMode.REAL_TIME;
+		
+		public void onAction(String name, boolean keyPressed, float tpf) {
+			if (keyPressed || simulator == null) {
+				return;
+			}
+			SimClock clock = simulator.getClock();
+			if (name.equals("Pause")) {
+				if (clock.getMode() == ClockMode.PAUSED || clock.getMode() == ClockMode.STEP) {
+					clock.setMode(resumeMode);
+				} else {
+					resumeMode = clock.getMode();
+					clock.setMode(ClockMode.PAUSED);
+				}
+			} else if (name.equals("Step")) {
+				if (clock.getMode() != ClockMode.PAUSED && clock.getMode() != ClockMode.STEP) {
+					resumeMode = clock.getMode();
+				}
+				clock.step(1);
+			} else if (name.equals("RealTime")) {
+				clock.setMode(ClockMode.REAL_TIME);
+			} else if (name.equals("Faster")) {
+				clock.setScale(currentScale(clock) * 2);
+			} else if (name.equals("Slower")) {
+				clock.setScale(currentScale(clock) / 2);
+			} else if (name.equals("MaxSpeed")) {
+				clock.setMode(ClockMode.MAX_SPEED);
+			}
+		}
+		
+		private double currentScale(SimClock clock) {
+			return (clock.getMode() == ClockMode.SCALED) ? clock.getScale() : 1.0;
+		}
+	};
 
 	private ActionListener actionListener = new ActionListener() {
 		public void onAction(String name, boolean keyPressed, float tpf) {